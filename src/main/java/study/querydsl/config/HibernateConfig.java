@@ -0,0 +1,18 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.TableWriteInspector;
+
+
+@Configuration
+public class HibernateConfig {
+
+  @Bean
+  public HibernatePropertiesCustomizer statementInspectorCustomizer(TableWriteInspector inspector) {
+    return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+  }
+
+}
@@ -0,0 +1,12 @@
+package study.querydsl.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "querydsl.archive.enabled", havingValue = "true")
+public class SchedulingConfig {
+}
@@ -0,0 +1,60 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.support.SemaphoreDataSource;
+import study.querydsl.support.VirtualThreads;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+
+
+// 요청 처리(와 그 안의 repository 호출)를 가상 스레드에서 실행한다. JDK 21+ 런타임이 필요하다.
+@Configuration
+@ConditionalOnProperty(name = "querydsl.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService virtualThreadExecutor() {
+    return VirtualThreads.newPerTaskExecutor()
+                         .orElseThrow(() -> new IllegalStateException(
+                             "querydsl.virtual-threads.enabled requires a JDK 21+ runtime"));
+  }
+
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+    return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+  }
+
+
+  // 애플리케이션이 쓰는 DataSource 하나만 감싼다. 여러 개면 @Primary 인 것만 감싼다.
+  @Bean
+  public static BeanPostProcessor semaphoreDataSourcePostProcessor(
+      ConfigurableListableBeanFactory beanFactory,
+      @Value("${querydsl.virtual-threads.db-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+      @Value("${querydsl.virtual-threads.db-permit-timeout-ms:30000}") long timeoutMillis) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof SemaphoreDataSource) && isPrimary(beanFactory, beanName))
+          return new SemaphoreDataSource((DataSource) bean, permits, timeoutMillis);
+        return bean;
+      }
+    };
+  }
+
+
+  private static boolean isPrimary(ConfigurableListableBeanFactory beanFactory, String beanName) {
+    String[] dataSources = beanFactory.getBeanNamesForType(DataSource.class, true, false);
+    if (dataSources.length == 1)
+      return dataSources[0].equals(beanName);
+    return beanFactory.containsBeanDefinition(beanName) && beanFactory.getBeanDefinition(beanName).isPrimary();
+  }
+
+}
@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.support.HibernateStatisticsReporter;
+
+import java.util.Map;
+
+
+// 통계 초기화는 모든 인스턴스 사용자의 측정 구간을 지우므로 조회와 따로, 명시적으로 켠 환경에서만 노출한다.
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.internal-stats.reset-enabled", havingValue = "true")
+public class HibernateStatsResetController {
+
+  private final HibernateStatisticsReporter hibernateStatisticsReporter;
+
+
+  // 초기화 직전의 스냅샷을 돌려준다.
+  @DeleteMapping("/internal/stats/hibernate")
+  public Map<String, Object> resetHibernate() {
+    Map<String, Object> snapshot = hibernateStatisticsReporter.snapshot();
+    hibernateStatisticsReporter.reset();
+    return snapshot;
+  }
+
+}
@@ -0,0 +1,34 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.repository.MemberSearchCoalescer;
+import study.querydsl.support.HibernateStatisticsReporter;
+
+import java.util.Map;
+
+
+// 운영 내부 지표. 기본은 꺼져 있고 querydsl.internal-stats.enabled 로 켠다. 초기화는 HibernateStatsResetController.
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "querydsl.internal-stats.enabled", havingValue = "true")
+public class InternalStatsController {
+
+  private final MemberSearchCoalescer memberSearchCoalescer;
+  private final HibernateStatisticsReporter hibernateStatisticsReporter;
+
+
+  @GetMapping("/internal/stats/search-coalescing")
+  public Map<String, Map<String, Long>> searchCoalescing() {
+    return memberSearchCoalescer.stats();
+  }
+
+
+  @GetMapping("/internal/stats/hibernate")
+  public Map<String, Object> hibernate() {
+    return hibernateStatisticsReporter.snapshot();
+  }
+
+}
@@ -1,16 +1,44 @@
 package study.querydsl.controller;
 
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.querydsl.binding.QuerydslPredicate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import study.querydsl.dto.AgeHistogramDto;
+import study.querydsl.dto.MemberChangesDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberBatchSearcher;
+import study.querydsl.repository.MemberChangeRepository;
+import study.querydsl.repository.MemberJdbcRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchCoalescer;
+import study.querydsl.repository.MemberStatsRepository;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.RowExportWriter;
+import study.querydsl.support.TableVersions;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 
 @RestController
@@ -18,24 +46,126 @@ import java.util.List;
 public class MemberController {
 
   private final MemberJpaRepository memberJpaRepository;
-  private final MemberRepository memberRepository;
+  private final MemberJdbcRepository memberJdbcRepository;
+  private final MemberSearchCoalescer memberSearchCoalescer;
+  private final MemberChangeRepository memberChangeRepository;
+  private final MemberBatchSearcher memberBatchSearcher;
+  private final MemberStatsRepository memberStatsRepository;
+  private final TableVersions tableVersions;
 
 
   @GetMapping("/v1/members")
-  public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
+  public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition,
+                                            @RequestParam(defaultValue = "false") boolean fastPath) {
+    if (fastPath || condition.isIncludeArchived())
+      return memberJdbcRepository.search(condition);
     return memberJpaRepository.search(condition);
   }
 
 
+  // 조건 목록을 한 번에 검색한다. 응답은 요청 목록의 index 를 키로 한다.
+  @PostMapping("/v1/members/search:batch")
+  public Map<Integer, List<MemberTeamDto>> searchMemberBatch(@RequestBody List<MemberSearchCondition> conditions) {
+    return memberBatchSearcher.search(conditions);
+  }
+
+
+  // 예) /v1/members/age-histogram?teamName=teamA&boundaries=20,30,40 -> [~20), [20,30), [30,40), [40~)
+  @GetMapping("/v1/members/age-histogram")
+  public AgeHistogramDto ageHistogram(MemberSearchCondition condition, @RequestParam List<Integer> boundaries) {
+    return memberStatsRepository.ageHistogram(condition, boundaries);
+  }
+
+
+  // 전체 덤프. 페이지/count 없이 커서로 읽어 gzip 으로 바로 응답 스트림에 쓴다. format=csv|ndjson
+  // member_archive 는 내보내지 않는다. includeArchived 는 응답을 쓰기 전에 400 으로 거부한다.
+  @GetMapping("/v1/members/export")
+  public void exportMembers(MemberSearchCondition condition, @RequestParam(defaultValue = "csv") String format,
+                            HttpServletResponse response) throws IOException {
+    RowExportWriter.Format exportFormat = exportFormat(format);
+    if (condition.isIncludeArchived())
+      throw new InvalidSearchException("includeArchived is not supported for exports");
+    response.setContentType("application/gzip");
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                       "attachment; filename=\"members." + exportFormat.name().toLowerCase(Locale.ROOT) + ".gz\"");
+
+    // 중간에 실패하면 gzip 을 마무리하지 않고 예외를 그대로 던져, 잘린 응답이 정상 파일로 보이지 않게 한다.
+    try (RowExportWriter writer = new RowExportWriter(response.getOutputStream(), exportFormat,
+                                                      "memberId", "username", "age", "teamId", "teamName")) {
+      memberJpaRepository.forEachRow(condition, row -> {
+        try {
+          writer.write(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId(), row.getTeamName());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      writer.finish();
+    }
+  }
+
+
+  // since 이후 변경/삭제된 member 와 변경된 team. 응답의 nextSince 로 이어서 요청한다.
+  @GetMapping("/v1/members/changes")
+  public MemberChangesDto memberChanges(@RequestParam(defaultValue = "0") long since,
+                                        @RequestParam(defaultValue = "100") int limit) {
+    return memberChangeRepository.findChanges(since, limit);
+  }
+
+
   @GetMapping("/v2/members")
-  public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-    return memberRepository.searchPageSimple(condition, pageable);
+  public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                            WebRequest request) {
+    if (request.checkNotModified(eTag("v2", condition, pageable)))
+      return null;
+    if (condition.isIncludeArchived())
+      return memberJdbcRepository.searchPage(condition, pageable);
+    return memberSearchCoalescer.searchPageSimple(condition, pageable);
   }
 
 
   @GetMapping("/v3/members")
-  public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-    return memberRepository.searchPageComplex(condition, pageable);
+  public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                            @RequestParam(defaultValue = "true") boolean exact,
+                                            @RequestParam(defaultValue = "false") boolean fastPath,
+                                            WebRequest request) {
+    if (request.checkNotModified(eTag("v3" + (exact? "": "~"), condition, pageable)))
+      return null;
+    if (fastPath || condition.isIncludeArchived())
+      return memberJdbcRepository.searchPage(condition, pageable, exact);
+    return memberSearchCoalescer.searchPageComplex(condition, pageable, exact);
+  }
+
+
+  // 예) /v5/members?team.name=teamA&age=10&age=30, /v5/members?id=1&id=2
+  @GetMapping("/v5/members")
+  public Page<MemberTeamDto> searchMemberV5(@QuerydslPredicate(root = Member.class, bindings = MemberRepository.class)
+                                            Predicate predicate, Pageable pageable) {
+    return memberSearchCoalescer.searchByPredicate(predicate, pageable);
+  }
+
+
+  // 검증에서 던진 예외만 400 으로 바꾼다. 다른 IllegalArgumentException 은 서버 오류로 남긴다.
+  @ExceptionHandler(InvalidSearchException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public String badRequest(InvalidSearchException e) {
+    return e.getMessage();
+  }
+
+
+  private RowExportWriter.Format exportFormat(String format) {
+    try {
+      return RowExportWriter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new InvalidSearchException("unsupported export format: " + format);
+    }
+  }
+
+
+  // 쿼리 실행 전에 버전을 읽어야 실행 중 쓰기가 있어도 다음 요청에서 다시 계산된다.
+  private String eTag(String api, MemberSearchCondition condition, Pageable pageable) {
+    String key = api + '|' + tableVersions.token(TableVersions.MEMBER, TableVersions.TEAM)
+                     + '|' + condition + '|' + pageable;
+    return DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
   }
 
 }
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+
+@Data
+public class AgeHistogramDto {
+
+  private List<AgeBucketDto> buckets;
+  private long total;
+
+
+  public AgeHistogramDto(List<AgeBucketDto> buckets) {
+    this.buckets = buckets;
+    this.total = buckets.stream().mapToLong(AgeBucketDto::getCount).sum();
+  }
+
+}
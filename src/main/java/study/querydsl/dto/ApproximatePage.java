@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+
+// approximate 이면 totalElements 는 countLimit 까지만 센 하한값이다. (예: "10,000+")
+public class ApproximatePage<T> extends PageImpl<T> {
+
+  private final boolean approximate;
+  private final long countLimit;
+
+
+  public ApproximatePage(List<T> content, Pageable pageable, long total, boolean approximate, long countLimit) {
+    super(content, pageable, total);
+    this.approximate = approximate;
+    this.countLimit = countLimit;
+  }
+
+
+  public boolean isApproximate() {
+    return approximate;
+  }
+
+
+  public long getCountLimit() {
+    return countLimit;
+  }
+
+}
@@ -0,0 +1,38 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+
+// deleted 면 memberId 와 changeSeq 만 채워진다.
+@Data
+public class MemberChangeDto {
+
+  private long changeSeq;
+  private Long memberId;
+  private String username;
+  private Integer age;
+  private Long teamId;
+  private String teamName;
+  private boolean deleted;
+
+
+  @QueryProjection
+  public MemberChangeDto(long changeSeq, Long memberId, String username, Integer age, Long teamId, String teamName) {
+    this.changeSeq = changeSeq;
+    this.memberId = memberId;
+    this.username = username;
+    this.age = age;
+    this.teamId = teamId;
+    this.teamName = teamName;
+  }
+
+
+  @QueryProjection
+  public MemberChangeDto(long changeSeq, Long memberId) {
+    this.changeSeq = changeSeq;
+    this.memberId = memberId;
+    this.deleted = true;
+  }
+
+}
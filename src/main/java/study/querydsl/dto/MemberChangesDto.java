@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+
+// 다음 요청은 since=nextSince 로 이어서 읽는다. members/teams 는 각각 changeSeq 순이다.
+@Data
+public class MemberChangesDto {
+
+  private long since;
+  private long nextSince;
+  private List<MemberChangeDto> members;
+  private List<TeamChangeDto> teams;
+
+
+  public MemberChangesDto(long since, long nextSince, List<MemberChangeDto> members, List<TeamChangeDto> teams) {
+    this.since = since;
+    this.nextSince = nextSince;
+    this.members = members;
+    this.teams = teams;
+  }
+
+}
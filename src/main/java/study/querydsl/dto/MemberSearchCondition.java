@@ -7,8 +7,12 @@ import lombok.Data;
 public class MemberSearchCondition {
 
   private String username;
+  // true 면 username 을 Usernames.normalize 규칙(NFKC + 대소문자 접기)으로 비교한다.
+  private boolean ignoreCase;
   private String teamName;
   private Integer ageGoe;
   private Integer ageLoe;
+  // true 면 member_archive 까지 UNION ALL 로 조회한다. JPQL 에는 UNION 이 없어 MemberJdbcRepository 로만 처리한다.
+  private boolean includeArchived;
 
 }
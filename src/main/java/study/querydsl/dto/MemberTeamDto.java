@@ -23,4 +23,11 @@ public class MemberTeamDto {
     this.teamName = teamName;
   }
 
+
+  // team 조인 없이 조회할 때 사용. teamName 은 호출자가 채운다.
+  @QueryProjection
+  public MemberTeamDto(Long memberId, String username, int age, Long teamId) {
+    this(memberId, username, age, teamId, null);
+  }
+
 }
@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+public class TeamMembersDto {
+
+  private Long teamId;
+  private String teamName;
+  private List<MemberTeamDto> members = new ArrayList<>();
+
+
+  public TeamMembersDto(Long teamId, String teamName) {
+    this.teamId = teamId;
+    this.teamName = teamName;
+  }
+
+}
@@ -0,0 +1,52 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+import static lombok.AccessLevel.PROTECTED;
+
+
+// 비활성 member 보관 테이블. MemberArchiver 가 JDBC 로 옮기고, 조회는 MemberJdbcRepository 가 member 와 UNION ALL 한다.
+@Entity
+@Immutable
+@Table(name = "member_archive",
+       indexes = {@Index(name = "idx_member_archive_username", columnList = "username"),
+                  @Index(name = "idx_member_archive_username_normalized", columnList = "username_normalized"),
+                  @Index(name = "idx_member_archive_age", columnList = "age"),
+                  @Index(name = "idx_member_archive_change_seq", columnList = "change_seq")})
+@Getter
+@NoArgsConstructor(access = PROTECTED)
+@ToString
+public class ArchivedMember {
+
+  @Id
+  @Column(name = "member_id")
+  private Long memberId;
+  private String username;
+  private int age;
+
+  @Column(name = "username_normalized")
+  private String usernameNormalized;
+
+  @Column(name = "team_id")
+  private Long teamId;
+
+  @Column(name = "last_active_at")
+  private LocalDateTime lastActiveAt;
+
+  @Column(name = "change_seq")
+  private Long changeSeq;
+
+  @Column(name = "archived_at")
+  private LocalDateTime archivedAt;
+
+}
@@ -1,17 +1,25 @@
 package study.querydsl.entity;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import study.querydsl.support.Usernames;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 import static javax.persistence.FetchType.LAZY;
 import static lombok.AccessLevel.PROTECTED;
 
 
 @Entity
+@Table(indexes = {@Index(name = "idx_member_username", columnList = "username"),
+                  @Index(name = "idx_member_username_normalized", columnList = "username_normalized"),
+                  @Index(name = "idx_member_age", columnList = "age"),
+                  @Index(name = "idx_member_change_seq", columnList = "change_seq"),
+                  @Index(name = "idx_member_last_active_at", columnList = "last_active_at")})
 @Getter
 @Setter
 @NoArgsConstructor(access = PROTECTED)
@@ -25,6 +33,20 @@ public class Member {
   private String username;
   private int age;
 
+  // 대소문자 무시 검색용. setUsername 에서만 갱신한다.
+  // 벌크 update 로 username 을 바꿀 때는 이 값도 Usernames.normalize 로 함께 set 해야 한다(TableWriteInspector 가 강제).
+  @Column(name = "username_normalized")
+  @Setter(AccessLevel.NONE)
+  private String usernameNormalized;
+
+  // 쓰기마다 ChangeFeedRecorder 가 채운다. 벌크 update 는 TableWriteInspector 가 채운다.
+  @Column(name = "change_seq")
+  private Long changeSeq;
+
+  // update 마다 ChangeFeedRecorder(벌크 update 는 TableWriteInspector)가 갱신한다. 오래 지나면 MemberArchiver 가 옮긴다.
+  @Column(name = "last_active_at")
+  private LocalDateTime lastActiveAt;
+
   @ManyToOne(fetch = LAZY)
   @JoinColumn(name = "team_id")
   private Team team;
@@ -42,15 +64,29 @@ public class Member {
 
   public Member(String username, int age, Team team) {
     this.age = age;
-    this.username = username;
+    setUsername(username);
+    this.lastActiveAt = LocalDateTime.now();
     changeTeam(team);
   }
 
 
+  public void setUsername(String username) {
+    this.username = username;
+    this.usernameNormalized = Usernames.normalize(username);
+  }
+
+
+  public void markActive() {
+    this.lastActiveAt = LocalDateTime.now();
+  }
+
+
   public void changeTeam(Team team) {
-    if (team != null) {
+    if (team != null && team != this.team) {
+      if (this.team != null)
+        this.team.removeMember(this);
       this.team = team;
-      team.getMembers().add(this);
+      team.addMember(this);
     }
   }
 
@@ -0,0 +1,44 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import static lombok.AccessLevel.PROTECTED;
+
+
+// member + team 조회용 비정규화 테이블. MemberTeamViewMaintainer 가 SQL 로 직접 갱신한다.
+@Entity
+@Immutable
+@Table(name = "member_team_view",
+       indexes = {@Index(name = "idx_member_team_view_team_name", columnList = "team_name, age"),
+                  @Index(name = "idx_member_team_view_username", columnList = "username"),
+                  @Index(name = "idx_member_team_view_username_normalized", columnList = "username_normalized"),
+                  @Index(name = "idx_member_team_view_age", columnList = "age")})
+@Getter
+@NoArgsConstructor(access = PROTECTED)
+@ToString
+public class MemberTeamView {
+
+  @Id
+  @Column(name = "member_id")
+  private Long memberId;
+  @Column(name = "username")
+  private String username;
+  @Column(name = "username_normalized")
+  private String usernameNormalized;
+  @Column(name = "age")
+  private int age;
+  @Column(name = "team_id")
+  private Long teamId;
+  @Column(name = "team_name")
+  private String teamName;
+
+}
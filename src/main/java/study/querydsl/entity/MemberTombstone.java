@@ -0,0 +1,31 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import static lombok.AccessLevel.PROTECTED;
+
+
+// 삭제된 member 의 변경 피드 기록. ChangeFeedRecorder 가 삭제와 같은 트랜잭션에서 JDBC 로 넣는다.
+@Entity
+@Table(indexes = @Index(name = "idx_member_tombstone_change_seq", columnList = "change_seq"))
+@Getter
+@NoArgsConstructor(access = PROTECTED)
+@ToString
+public class MemberTombstone {
+
+  @Id
+  @Column(name = "member_id")
+  private Long memberId;
+
+  @Column(name = "change_seq", nullable = false)
+  private Long changeSeq;
+
+}
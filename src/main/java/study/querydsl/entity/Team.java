@@ -4,6 +4,9 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
 
@@ -14,6 +17,8 @@ import static lombok.AccessLevel.PROTECTED;
 
 
 @Entity
+@Table(indexes = {@Index(name = "idx_team_name", columnList = "name"),
+                  @Index(name = "idx_team_change_seq", columnList = "change_seq")})
 @Getter
 @Setter
 @NoArgsConstructor(access = PROTECTED)
@@ -26,7 +31,12 @@ public class Team {
   private Long id;
   private String name;
 
+  @Column(name = "change_seq")
+  private Long changeSeq;
+
+  // EXTRA: size()/contains() 도 컬렉션 전체를 로딩하지 않는다.
   @OneToMany(mappedBy = "team")
+  @LazyCollection(LazyCollectionOption.EXTRA)
   private List<Member> members = new ArrayList<>();
 
 
@@ -34,4 +44,17 @@ public class Team {
     this.name = name;
   }
 
+
+  // 초기화되지 않은 inverse bag 에 대한 add 는 큐에 쌓였다가 로딩 시 반영되므로 팀 크기와 무관하다.
+  public void addMember(Member member) {
+    members.add(member);
+  }
+
+
+  // remove 는 bag 을 초기화하므로 이미 로딩된 경우에만 메모리 상태를 맞춘다. DB 는 member.team 이 기준이다.
+  public void removeMember(Member member) {
+    if (Hibernate.isInitialized(members))
+      members.remove(member);
+  }
+
 }
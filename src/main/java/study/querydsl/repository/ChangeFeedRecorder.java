@@ -0,0 +1,143 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.ChangeSequence;
+import study.querydsl.support.TableWriteInspector;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+
+// member/team 의 insert/update 마다 change_seq 를 새로 할당하고, member 삭제는 tombstone 으로 남긴다.
+// member update 는 활동으로 보고 last_active_at 도 갱신한다. MemberArchiver 가 이 값으로 옮길 대상을 고른다.
+// tombstone 은 삭제와 같은 트랜잭션, 같은 커넥션에서 기록한다.
+// 벌크 delete 는 이벤트가 없어 tombstone 을 남길 수 없으므로 TableWriteInspector 가 엔티티 삭제 밖의 member delete 를 거부한다.
+// querydsl.changes.record-deletes=false 면 tombstone 을 남기지 않는다. 피드에 삭제가 나오지 않는 대신 벌크 delete 가 허용된다.
+@Component
+public class ChangeFeedRecorder
+    implements PreInsertEventListener, PreUpdateEventListener, PreDeleteEventListener, PostDeleteEventListener {
+
+  private static final String CHANGE_SEQ = "changeSeq";
+  private static final String LAST_ACTIVE_AT = "lastActiveAt";
+  private static final String INSERT_TOMBSTONE =
+      "insert into member_tombstone (member_id, change_seq) values (?, ?)";
+
+  private final EntityManagerFactory emf;
+  private final ChangeSequence changeSequence;
+  private final TableWriteInspector tableWriteInspector;
+  private final boolean recordDeletes;
+
+
+  public ChangeFeedRecorder(EntityManagerFactory emf, ChangeSequence changeSequence,
+                            TableWriteInspector tableWriteInspector,
+                            @Value("${querydsl.changes.record-deletes:true}") boolean recordDeletes) {
+    this.emf = emf;
+    this.changeSequence = changeSequence;
+    this.tableWriteInspector = tableWriteInspector;
+    this.recordDeletes = recordDeletes;
+  }
+
+
+  @PostConstruct
+  public void register() {
+    EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                                        .getServiceRegistry()
+                                        .getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.PRE_INSERT, this);
+    registry.appendListeners(EventType.PRE_UPDATE, this);
+    registry.appendListeners(EventType.PRE_DELETE, this);
+    registry.appendListeners(EventType.POST_DELETE, this);
+  }
+
+
+  @Override
+  public boolean onPreInsert(PreInsertEvent event) {
+    assign(event.getEntity(), event.getPersister(), event.getState());
+    return false;
+  }
+
+
+  @Override
+  public boolean onPreUpdate(PreUpdateEvent event) {
+    if (event.getEntity() instanceof Member) {
+      Member member = (Member) event.getEntity();
+      member.markActive();
+      set(event.getPersister(), event.getState(), LAST_ACTIVE_AT, member.getLastActiveAt());
+    }
+    assign(event.getEntity(), event.getPersister(), event.getState());
+    return false;
+  }
+
+
+  @Override
+  public boolean onPreDelete(PreDeleteEvent event) {
+    if (recordDeletes && event.getEntity() instanceof Member)
+      tableWriteInspector.beginEntityDelete();
+    return false;
+  }
+
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    if (!recordDeletes || !(event.getEntity() instanceof Member))
+      return;
+    tableWriteInspector.endEntityDelete();
+    long seq = changeSequence.next();
+    event.getSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(INSERT_TOMBSTONE)) {
+        statement.setObject(1, event.getId());
+        statement.setLong(2, seq);
+        statement.executeUpdate();
+      }
+    });
+  }
+
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    return false;
+  }
+
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return false;
+  }
+
+
+  // 엔티티 필드와 이번 insert/update 에 쓰일 상태 배열을 함께 바꾼다.
+  private void assign(Object entity, EntityPersister persister, Object[] state) {
+    Long seq;
+    if (entity instanceof Member)
+      ((Member) entity).setChangeSeq(seq = changeSequence.next());
+    else if (entity instanceof Team)
+      ((Team) entity).setChangeSeq(seq = changeSequence.next());
+    else
+      return;
+    set(persister, state, CHANGE_SEQ, seq);
+  }
+
+
+  private static void set(EntityPersister persister, Object[] state, String property, Object value) {
+    state[Arrays.asList(persister.getPropertyNames()).indexOf(property)] = value;
+  }
+
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.support.TableVersions;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+// last_active_at 이 오래된 member 를 배치 단위로 member_archive 로 옮긴다. 배치마다 별도 트랜잭션이다.
+// JDBC 로 지우므로 TableWriteInspector 를 거치지 않는다. 커밋 후 member 버전을 직접 올린다.
+// 옮겨진 member 는 삭제가 아니므로 변경 피드에 tombstone 을 남기지 않는다.
+@Component
+@ConditionalOnProperty(name = "querydsl.archive.enabled", havingValue = "true")
+public class MemberArchiver {
+
+  private static final String SELECT_IDS =
+      "select member_id from member where last_active_at < :cutoff"
+      + " order by last_active_at, member_id limit :limit for update";
+  private static final String COPY =
+      "insert into member_archive"
+      + " (member_id, username, username_normalized, age, team_id, last_active_at, change_seq, archived_at)"
+      + " select member_id, username, username_normalized, age, team_id, last_active_at, change_seq, :archivedAt"
+      + " from member where member_id in (:ids)";
+  private static final String DELETE = "delete from member where member_id in (:ids)";
+  private static final String DELETE_VIEW = "delete from member_team_view where member_id in (:ids)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final TableVersions tableVersions;
+  private final boolean readModelEnabled;
+  private final long inactiveDays;
+  private final int batchSize;
+
+
+  public MemberArchiver(NamedParameterJdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                        TableVersions tableVersions,
+                        @Value("${querydsl.read-model.enabled:false}") boolean readModelEnabled,
+                        @Value("${querydsl.archive.inactive-days:180}") long inactiveDays,
+                        @Value("${querydsl.archive.batch-size:1000}") int batchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = transactionTemplate;
+    this.tableVersions = tableVersions;
+    this.readModelEnabled = readModelEnabled;
+    this.inactiveDays = inactiveDays;
+    this.batchSize = batchSize;
+  }
+
+
+  @Scheduled(fixedDelayString = "${querydsl.archive.interval-ms:3600000}",
+             initialDelayString = "${querydsl.archive.interval-ms:3600000}")
+  public void archiveInactive() {
+    archive(LocalDateTime.now().minusDays(inactiveDays));
+  }
+
+
+  // cutoff 이전에 마지막으로 활동한 member 를 모두 옮기고 옮긴 건수를 반환한다.
+  public int archive(LocalDateTime cutoff) {
+    int total = 0;
+    int archived;
+    do {
+      archived = archiveBatch(cutoff);
+      total += archived;
+    } while (archived == batchSize);
+    return total;
+  }
+
+
+  private int archiveBatch(LocalDateTime cutoff) {
+    Integer archived = transactionTemplate.execute(status -> {
+      List<Long> ids = jdbcTemplate.queryForList(SELECT_IDS, new MapSqlParameterSource()
+                                                     .addValue("cutoff", cutoff)
+                                                     .addValue("limit", batchSize), Long.class);
+      if (ids.isEmpty())
+        return 0;
+
+      MapSqlParameterSource params = new MapSqlParameterSource()
+          .addValue("ids", ids)
+          .addValue("archivedAt", LocalDateTime.now());
+      jdbcTemplate.update(COPY, params);
+      if (readModelEnabled)
+        jdbcTemplate.update(DELETE_VIEW, params);
+      return jdbcTemplate.update(DELETE, params);
+    });
+    if (archived != null && archived > 0)
+      tableVersions.bump(TableVersions.MEMBER);
+    return archived == null? 0: archived;
+  }
+
+}
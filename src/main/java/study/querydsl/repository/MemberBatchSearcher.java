@@ -0,0 +1,183 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.Usernames;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+
+// 여러 검색 조건을 한 번에 처리한다. 결과는 요청 순서(index)를 키로 돌려준다.
+// username 하나 또는 team 이름 하나만 건 조건은 모아서 IN 쿼리 한 번으로 읽고 그 컬럼 값으로 나눈다.
+// 나머지 조건은 제한된 풀에서 동시에 실행하므로 호출자 트랜잭션의 미커밋 데이터는 보이지 않는다.
+// 필터가 하나도 없는 조건은 전체 조회가 되므로 거부한다.
+// 하나라도 실패하면 남은 검색은 결과를 쓸 곳이 없으므로 취소한다.
+@Repository
+public class MemberBatchSearcher implements DisposableBean {
+
+  private final JPAQueryFactory queryFactory;
+  private final MemberSearchCoalescer memberSearchCoalescer;
+  private final MemberJdbcRepository memberJdbcRepository;
+  private final int maxConditions;
+  private final ThreadPoolExecutor executor;
+
+
+  public MemberBatchSearcher(EntityManager em, MemberSearchCoalescer memberSearchCoalescer,
+                             MemberJdbcRepository memberJdbcRepository,
+                             @Value("${querydsl.search.batch.max-conditions:100}") int maxConditions,
+                             @Value("${querydsl.search.batch.threads:4}") int threads) {
+    this.queryFactory = new JPAQueryFactory(em);
+    this.memberSearchCoalescer = memberSearchCoalescer;
+    this.memberJdbcRepository = memberJdbcRepository;
+    this.maxConditions = maxConditions;
+    // 큐가 차면 호출 스레드가 직접 실행한다.
+    this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 4),
+                                           r -> {
+                                             Thread thread = new Thread(r, "member-batch-search");
+                                             thread.setDaemon(true);
+                                             return thread;
+                                           },
+                                           new ThreadPoolExecutor.CallerRunsPolicy());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+
+  public Map<Integer, List<MemberTeamDto>> search(List<MemberSearchCondition> conditions) {
+    if (conditions.isEmpty() || conditions.size() > maxConditions)
+      throw new InvalidSearchException("conditions must contain 1 to " + maxConditions + " entries");
+
+    for (int i = 0; i < conditions.size(); ++i)
+      if (isUnfiltered(conditions.get(i)))
+        throw new InvalidSearchException("conditions[" + i + "] needs at least one of"
+                                         + " username, teamName, ageGoe, ageLoe");
+
+    Map<String, List<Integer>> byUsername = new LinkedHashMap<>();
+    Map<String, List<Integer>> byNormalizedUsername = new LinkedHashMap<>();
+    Map<String, List<Integer>> byTeamName = new LinkedHashMap<>();
+    Map<Integer, Future<List<MemberTeamDto>>> others = new LinkedHashMap<>();
+    for (int i = 0; i < conditions.size(); ++i) {
+      MemberSearchCondition condition = conditions.get(i);
+      if (isUsernameOnly(condition) && condition.isIgnoreCase())
+        byNormalizedUsername.computeIfAbsent(Usernames.normalize(condition.getUsername()), k -> new ArrayList<>()).add(i);
+      else if (isUsernameOnly(condition))
+        byUsername.computeIfAbsent(condition.getUsername(), k -> new ArrayList<>()).add(i);
+      else if (isTeamNameOnly(condition))
+        byTeamName.computeIfAbsent(condition.getTeamName(), k -> new ArrayList<>()).add(i);
+      else
+        others.put(i, executor.submit(() -> searchOne(condition)));
+    }
+
+    Map<Integer, List<MemberTeamDto>> results = new HashMap<>();
+    try {
+      searchGrouped(byUsername, member.username, UnaryOperator.identity(), results);
+      searchGrouped(byNormalizedUsername, member.usernameNormalized, Usernames::normalize, results);
+      searchGrouped(byTeamName, team.name, UnaryOperator.identity(), results);
+      others.forEach((index, future) -> results.put(index, await(future)));
+    } catch (RuntimeException e) {
+      others.values().forEach(future -> future.cancel(true));
+      throw e;
+    }
+
+    Map<Integer, List<MemberTeamDto>> ordered = new LinkedHashMap<>();
+    for (int i = 0; i < conditions.size(); ++i)
+      ordered.put(i, results.get(i));
+    return ordered;
+  }
+
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+
+  // path IN (값들) 한 번으로 읽고, DB 가 비교한 path 값을 함께 읽어 그 값으로 조건별 결과를 나눈다.
+  // groups 의 키는 WHERE 에 넣은 값(정규화 그룹이면 정규화한 요청 값)이다. 버킷도 같은 key 함수를 거친 path 값으로 잡아
+  // 요청과 저장 값의 대소문자, 전각 여부가 달라도 DB 가 찾은 행을 버리지 않는다.
+  // 같은 값의 조건은 같은 결과를 공유하지 않고 복사한다.
+  private void searchGrouped(Map<String, List<Integer>> groups, StringPath path, UnaryOperator<String> key,
+                             Map<Integer, List<MemberTeamDto>> results) {
+    if (groups.isEmpty())
+      return;
+
+    QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    Map<String, List<MemberTeamDto>> buckets = new HashMap<>();
+    for (Tuple row : queryFactory.select(qMemberTeamDto, path)
+                                 .from(member)
+                                 .leftJoin(member.team, team)
+                                 .where(path.in(groups.keySet()))
+                                 .fetch())
+      buckets.computeIfAbsent(key.apply(row.get(path)), k -> new ArrayList<>()).add(row.get(qMemberTeamDto));
+
+    groups.forEach((value, indexes) -> {
+      for (Integer index : indexes)
+        results.put(index, new ArrayList<>(buckets.getOrDefault(value, List.of())));
+    });
+  }
+
+
+  private List<MemberTeamDto> searchOne(MemberSearchCondition condition) {
+    if (condition.isIncludeArchived())
+      return memberJdbcRepository.search(condition);
+    return memberSearchCoalescer.search(condition);
+  }
+
+
+  private List<MemberTeamDto> await(Future<List<MemberTeamDto>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while searching members", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+
+  private boolean isUnfiltered(MemberSearchCondition condition) {
+    return !hasText(condition.getUsername()) && !hasText(condition.getTeamName())
+           && condition.getAgeGoe() == null && condition.getAgeLoe() == null;
+  }
+
+
+  private boolean isUsernameOnly(MemberSearchCondition condition) {
+    return hasText(condition.getUsername()) && !hasText(condition.getTeamName()) && hasNoOtherFilter(condition);
+  }
+
+
+  private boolean isTeamNameOnly(MemberSearchCondition condition) {
+    return hasText(condition.getTeamName()) && !hasText(condition.getUsername()) && hasNoOtherFilter(condition);
+  }
+
+
+  private boolean hasNoOtherFilter(MemberSearchCondition condition) {
+    return condition.getAgeGoe() == null && condition.getAgeLoe() == null && !condition.isIncludeArchived();
+  }
+
+}
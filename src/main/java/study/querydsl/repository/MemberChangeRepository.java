@@ -0,0 +1,104 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberChangeDto;
+import study.querydsl.dto.MemberChangesDto;
+import study.querydsl.dto.QMemberChangeDto;
+import study.querydsl.dto.QTeamChangeDto;
+import study.querydsl.dto.TeamChangeDto;
+import study.querydsl.support.ChangeSequence;
+import study.querydsl.support.InvalidSearchException;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTombstone.memberTombstone;
+import static study.querydsl.entity.QTeam.team;
+
+
+@Repository
+public class MemberChangeRepository {
+
+  private final JPAQueryFactory queryFactory;
+  private final ChangeSequence changeSequence;
+  private final int maxLimit;
+
+
+  public MemberChangeRepository(EntityManager em, ChangeSequence changeSequence,
+                                @Value("${querydsl.changes.max-limit:1000}") int maxLimit) {
+    this.queryFactory = new JPAQueryFactory(em);
+    this.changeSequence = changeSequence;
+    this.maxLimit = maxLimit;
+  }
+
+
+  // since 보다 크고 watermark 이하인 변경을 순번 순으로 약 limit 건 읽는다.
+  // 같은 순번(벌크 update 한 번)은 나누지 않으므로 limit 를 넘을 수 있다.
+  @Transactional(readOnly = true)
+  public MemberChangesDto findChanges(long since, int limit) {
+    if (since < 0)
+      throw new InvalidSearchException("since must not be negative: " + since);
+    if (limit <= 0 || limit > maxLimit)
+      throw new InvalidSearchException("limit must be between 1 and " + maxLimit);
+
+    long until = until(since, limit, changeSequence.watermark());
+
+    List<MemberChangeDto> members = new ArrayList<>();
+    members.addAll(queryFactory.select(new QMemberChangeDto(member.changeSeq, member.id, member.username,
+                                                            member.age, member.team.id, team.name))
+                               .from(member)
+                               .leftJoin(member.team, team)
+                               .where(member.changeSeq.gt(since), member.changeSeq.loe(until))
+                               .fetch());
+    members.addAll(queryFactory.select(new QMemberChangeDto(memberTombstone.changeSeq, memberTombstone.memberId))
+                               .from(memberTombstone)
+                               .where(memberTombstone.changeSeq.gt(since), memberTombstone.changeSeq.loe(until))
+                               .fetch());
+    members.sort(Comparator.comparingLong(MemberChangeDto::getChangeSeq)
+                           .thenComparing(MemberChangeDto::getMemberId));
+
+    List<TeamChangeDto> teams = queryFactory.select(new QTeamChangeDto(team.changeSeq, team.id, team.name))
+                                            .from(team)
+                                            .where(team.changeSeq.gt(since), team.changeSeq.loe(until))
+                                            .orderBy(team.changeSeq.asc(), team.id.asc())
+                                            .fetch();
+    return new MemberChangesDto(since, until, members, teams);
+  }
+
+
+  // 세 테이블의 순번을 각각 limit 개씩 인덱스로만 읽어 limit 번째 순번을 상한으로 정한다.
+  // limit 개가 안 되면 watermark 까지 모두 읽은 것이므로 watermark 가 상한이다.
+  private long until(long since, int limit, long watermark) {
+    List<Long> seqs = new ArrayList<>();
+    seqs.addAll(queryFactory.select(member.changeSeq)
+                            .from(member)
+                            .where(member.changeSeq.gt(since), member.changeSeq.loe(watermark))
+                            .orderBy(member.changeSeq.asc())
+                            .limit(limit)
+                            .fetch());
+    seqs.addAll(queryFactory.select(memberTombstone.changeSeq)
+                            .from(memberTombstone)
+                            .where(memberTombstone.changeSeq.gt(since), memberTombstone.changeSeq.loe(watermark))
+                            .orderBy(memberTombstone.changeSeq.asc())
+                            .limit(limit)
+                            .fetch());
+    seqs.addAll(queryFactory.select(team.changeSeq)
+                            .from(team)
+                            .where(team.changeSeq.gt(since), team.changeSeq.loe(watermark))
+                            .orderBy(team.changeSeq.asc())
+                            .limit(limit)
+                            .fetch());
+    if (seqs.size() < limit)
+      return Math.max(since, watermark);
+    Collections.sort(seqs);
+    return seqs.get(limit - 1);
+  }
+
+}
@@ -0,0 +1,92 @@
+package study.querydsl.repository;
+
+import study.querydsl.entity.Member;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+
+// id 순으로 chunkSize 만큼씩 읽는다. prefetcher 가 있으면 현재 chunk 를 처리하는 동안 다음 chunk 를 읽어 둔다.
+class MemberChunkIterator implements Iterator<List<Member>> {
+
+  private final Function<Long, List<Member>> loader;
+  private final int chunkSize;
+  private final Runnable beforeNextChunk;
+  private final ExecutorService prefetcher;
+
+  private Long lastId;
+  private List<Member> nextChunk;
+  private Future<List<Member>> prefetched;
+  private boolean exhausted;
+
+
+  MemberChunkIterator(Function<Long, List<Member>> loader, int chunkSize,
+                      Runnable beforeNextChunk, ExecutorService prefetcher) {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    this.loader = loader;
+    this.chunkSize = chunkSize;
+    this.beforeNextChunk = beforeNextChunk;
+    this.prefetcher = prefetcher;
+  }
+
+
+  @Override
+  public boolean hasNext() {
+    if (nextChunk == null && !exhausted)
+      nextChunk = load();
+    return nextChunk != null && !nextChunk.isEmpty();
+  }
+
+
+  @Override
+  public List<Member> next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    List<Member> chunk = nextChunk;
+    nextChunk = null;
+    if (chunk.size() < chunkSize) {
+      exhausted = true;
+    } else {
+      lastId = chunk.get(chunk.size() - 1).getId();
+      if (prefetcher != null) {
+        Long from = lastId;
+        prefetched = prefetcher.submit(() -> loader.apply(from));
+      }
+    }
+    return chunk;
+  }
+
+
+  private List<Member> load() {
+    if (prefetched != null) {
+      Future<List<Member>> future = prefetched;
+      prefetched = null;
+      return await(future);
+    }
+    if (lastId != null)
+      beforeNextChunk.run();
+    return loader.apply(lastId);
+  }
+
+
+  private List<Member> await(Future<List<Member>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while prefetching member chunk", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+}
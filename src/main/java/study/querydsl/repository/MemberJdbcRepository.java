@@ -0,0 +1,168 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.ApproximatePage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.Usernames;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.util.StringUtils.hasText;
+
+
+// MemberTeamDto 만 필요한 검색을 JPQL 변환과 영속성 컨텍스트 없이 SQL 로 바로 실행한다.
+// 조건/정렬 규칙은 MemberRepositoryImpl 과 같다. includeArchived 면 member_archive 를 UNION ALL 한다.
+@Repository
+public class MemberJdbcRepository {
+
+  private static final String MEMBER = "member";
+  private static final String ARCHIVE = "member_archive";
+  private static final String JOIN_TEAM = " left join team t on t.team_id = m.team_id";
+
+  private static final Map<String, String> SORTABLE =
+      Map.of("id", "m.member_id", "username", "m.username", "age", "m.age", "teamName", "t.name");
+  private static final Map<String, String> UNION_SORTABLE =
+      Map.of("id", "u.member_id", "username", "u.username", "age", "u.age", "teamName", "u.team_name");
+
+  private static final RowMapper<MemberTeamDto> MEMBER_TEAM_DTO =
+      (rs, rowNum) -> new MemberTeamDto(rs.getLong("member_id"), rs.getString("username"), rs.getInt("age"),
+                                        rs.getObject("team_id", Long.class), rs.getString("team_name"));
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final long countLimit;
+
+
+  public MemberJdbcRepository(NamedParameterJdbcTemplate jdbcTemplate,
+                              @Value("${querydsl.search.count-limit:10000}") long countLimit) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.countLimit = countLimit;
+  }
+
+
+  public List<MemberTeamDto> search(MemberSearchCondition condition) {
+    MapSqlParameterSource params = new MapSqlParameterSource();
+    return jdbcTemplate.query(select(condition, params), params, MEMBER_TEAM_DTO);
+  }
+
+
+  public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+    List<MemberTeamDto> contents = fetchPage(condition, pageable);
+    return PageableExecutionUtils.getPage(contents, pageable, () -> count(condition));
+  }
+
+
+  // exact=false 면 MemberRepositoryImpl 과 같이 count 를 countLimit 까지만 센다.
+  public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable, boolean exact) {
+    if (exact)
+      return searchPage(condition, pageable);
+
+    List<MemberTeamDto> contents = fetchPage(condition, pageable);
+    if (pageable.getOffset() == 0 && contents.size() < pageable.getPageSize())
+      return new ApproximatePage<>(contents, pageable, contents.size(), false, countLimit);
+    long bounded = countUpTo(condition, countLimit + 1);
+    return new ApproximatePage<>(contents, pageable, Math.min(bounded, countLimit), bounded > countLimit, countLimit);
+  }
+
+
+  public long count(MemberSearchCondition condition) {
+    long count = count(MEMBER, condition);
+    return condition.isIncludeArchived()? count + count(ARCHIVE, condition): count;
+  }
+
+
+  private List<MemberTeamDto> fetchPage(MemberSearchCondition condition, Pageable pageable) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("limit", pageable.getPageSize())
+        .addValue("offset", pageable.getOffset());
+    String sql = condition.isIncludeArchived()
+                 ? "select * from (" + select(condition, params) + ") u" + orderBy(pageable.getSort(), UNION_SORTABLE, "u")
+                 : select(condition, params) + orderBy(pageable.getSort(), SORTABLE, "m");
+    return jdbcTemplate.query(sql + " limit :limit offset :offset", params, MEMBER_TEAM_DTO);
+  }
+
+
+  // 최대 limit 행까지만 읽고 센다. 결과가 limit 보다 작을 때만 정확한 건수다.
+  private long countUpTo(MemberSearchCondition condition, long limit) {
+    MapSqlParameterSource params = new MapSqlParameterSource().addValue("countLimit", limit);
+    String rows = rows(MEMBER, condition, params);
+    if (condition.isIncludeArchived())
+      rows += " union all " + rows(ARCHIVE, condition, params);
+    Long count = jdbcTemplate.queryForObject("select count(*) from (select 1 from (" + rows + ") r limit :countLimit) c",
+                                             params, Long.class);
+    return count == null? 0: count;
+  }
+
+
+  private String rows(String table, MemberSearchCondition condition, MapSqlParameterSource params) {
+    return "select 1 as one from " + table + " m" + (hasText(condition.getTeamName())? JOIN_TEAM: "")
+           + where(condition, params);
+  }
+
+
+  private long count(String table, MemberSearchCondition condition) {
+    MapSqlParameterSource params = new MapSqlParameterSource();
+    String from = "select count(*) from " + table + " m" + (hasText(condition.getTeamName())? JOIN_TEAM: "");
+    Long count = jdbcTemplate.queryForObject(from + where(condition, params), params, Long.class);
+    return count == null? 0: count;
+  }
+
+
+  private String select(MemberSearchCondition condition, MapSqlParameterSource params) {
+    String member = select(MEMBER) + where(condition, params);
+    return condition.isIncludeArchived()? member + " union all " + select(ARCHIVE) + where(condition, params): member;
+  }
+
+
+  private String select(String table) {
+    return "select m.member_id, m.username, m.age, t.team_id, t.name as team_name from " + table + " m" + JOIN_TEAM;
+  }
+
+
+  private String where(MemberSearchCondition condition, MapSqlParameterSource params) {
+    StringBuilder where = new StringBuilder(" where 1 = 1");
+    if (hasText(condition.getUsername()) && condition.isIgnoreCase()) {
+      where.append(" and m.username_normalized = :username");
+      params.addValue("username", Usernames.normalize(condition.getUsername()));
+    } else if (hasText(condition.getUsername())) {
+      where.append(" and m.username = :username");
+      params.addValue("username", condition.getUsername());
+    }
+    if (hasText(condition.getTeamName())) {
+      where.append(" and t.name = :teamName");
+      params.addValue("teamName", condition.getTeamName());
+    }
+    if (condition.getAgeGoe() != null) {
+      where.append(" and m.age >= :ageGoe");
+      params.addValue("ageGoe", condition.getAgeGoe());
+    }
+    if (condition.getAgeLoe() != null) {
+      where.append(" and m.age <= :ageLoe");
+      params.addValue("ageLoe", condition.getAgeLoe());
+    }
+    return where.toString();
+  }
+
+
+  private String orderBy(Sort sort, Map<String, String> sortable, String alias) {
+    StringBuilder orderBy = new StringBuilder(" order by ");
+    for (Sort.Order order : sort) {
+      String column = sortable.get(order.getProperty());
+      if (column == null)
+        throw new InvalidSearchException("unsupported sort property: " + order.getProperty());
+      orderBy.append(column).append(order.isAscending()? " asc, ": " desc, ");
+    }
+    return orderBy.append(alias).append(".member_id asc").toString();
+  }
+
+}
@@ -1,37 +1,120 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.hibernate.HibernateQuery;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.support.IdBatches;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+import study.querydsl.support.Usernames;
+import study.querydsl.support.VersionedCache;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberPredicates.ageGoe;
+import static study.querydsl.repository.MemberPredicates.ageLoe;
+import static study.querydsl.repository.MemberPredicates.teamNameEq;
+import static study.querydsl.repository.MemberPredicates.usernameEq;
 
 
 @Repository
-public class MemberJpaRepository {
+public class MemberJpaRepository implements DisposableBean {
 
   private EntityManager em;
   private JPAQueryFactory queryFactory;
-
-
-  public MemberJpaRepository(EntityManager em) {
+  private TeamNameCache teamNameCache;
+  private TableWriteInspector tableWriteInspector;
+  private ObjectProvider<MemberTeamViewMaintainer> viewMaintainer;
+  private boolean teamNameCacheEnabled;
+  private boolean readModelEnabled;
+  private VersionedCache<Long, MemberTeamDto> nearCache;
+  private int multiGetBatchSize;
+  private int multiGetParallelBatches;
+  private ExecutorService multiGetExecutor;
+  private int exportFetchSize;
+
+
+  public MemberJpaRepository(EntityManager em, TeamNameCache teamNameCache, TableVersions tableVersions,
+                             TableWriteInspector tableWriteInspector,
+                             ObjectProvider<MemberTeamViewMaintainer> viewMaintainer,
+                             @Value("${querydsl.member.multi-get.batch-size:100}") int multiGetBatchSize,
+                             @Value("${querydsl.member.multi-get.parallel-batches:4}") int multiGetParallelBatches,
+                             @Value("${querydsl.member.multi-get.threads:4}") int multiGetThreads,
+                             @Value("${querydsl.member.near-cache.size:10000}") int nearCacheSize,
+                             @Value("${querydsl.member.near-cache.ttl-ms:60000}") long nearCacheTtlMillis,
+                             @Value("${querydsl.export.fetch-size:5000}") int exportFetchSize,
+                             @Value("${querydsl.search.team-name-cache:true}") boolean teamNameCacheEnabled,
+                             @Value("${querydsl.read-model.enabled:false}") boolean readModelEnabled) {
     this.em = em;
     this.queryFactory = new JPAQueryFactory(em);
+    this.teamNameCache = teamNameCache;
+    this.tableWriteInspector = tableWriteInspector;
+    this.viewMaintainer = viewMaintainer;
+    this.nearCache = new VersionedCache<>(nearCacheSize, nearCacheTtlMillis,
+                                          () -> tableVersions.token(TableVersions.MEMBER, TableVersions.TEAM));
+    this.multiGetBatchSize = multiGetBatchSize;
+    this.multiGetParallelBatches = multiGetParallelBatches;
+    this.multiGetExecutor = Executors.newFixedThreadPool(multiGetThreads, r -> {
+      Thread thread = new Thread(r, "member-multi-get");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.exportFetchSize = exportFetchSize;
+    this.teamNameCacheEnabled = teamNameCacheEnabled;
+    this.readModelEnabled = readModelEnabled;
+  }
+
+
+  @Override
+  public void destroy() {
+    multiGetExecutor.shutdownNow();
   }
 
 
@@ -45,20 +128,146 @@ public class MemberJpaRepository {
   }
 
 
+  // 입력 순서대로 반환하고 없는 id 는 건너뛴다. 캐시에 없는 id 만 패딩된 IN 배치로 읽는다.
+  // 배치가 parallel-batches 개 이상이면 배치마다 별도 EntityManager 로 병렬 실행한다.
+  // 캐시는 member/team 쓰기로 버전이 바뀌면 무효가 된다.
+  // 호출자 트랜잭션이 member/team 에 썼으면 자신의 변경이 보이도록 캐시를 읽지 않고,
+  // 미커밋 데이터가 섞이므로 병렬로 나누지 않고 캐시에도 넣지 않는다.
+  public List<MemberTeamDto> findAllById(Collection<Long> ids) {
+    boolean sharable = !writesInCurrentTransaction();
+    String version = nearCache.version();
+    Map<Long, MemberTeamDto> rows = new HashMap<>();
+    Set<Long> missing = new LinkedHashSet<>();
+    for (Long id : ids) {
+      MemberTeamDto cached = sharable? nearCache.getIfPresent(id): null;
+      if (cached != null)
+        rows.put(id, cached);
+      else
+        missing.add(id);
+    }
+
+    List<List<Long>> batches = IdBatches.partition(missing, multiGetBatchSize);
+    List<MemberTeamDto> loaded = sharable && batches.size() >= multiGetParallelBatches? fetchByIdsParallel(batches)
+                                                                                       : fetchByIds(queryFactory, batches);
+    // 조회 중 자동 flush 로 쓰기가 생겼을 수 있으므로 한 번 더 확인한다.
+    sharable &= !writesInCurrentTransaction();
+    for (MemberTeamDto memberTeamDto : loaded) {
+      rows.put(memberTeamDto.getMemberId(), memberTeamDto);
+      if (sharable)
+        nearCache.put(memberTeamDto.getMemberId(), memberTeamDto, version);
+    }
+
+    // 캐시 항목이 호출자에게 변경되지 않도록 복사해서 돌려준다.
+    List<MemberTeamDto> result = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      MemberTeamDto row = rows.get(id);
+      if (row != null)
+        result.add(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId(),
+                                     row.getTeamName()));
+    }
+    return result;
+  }
+
+
+  // flush 된 쓰기와 아직 flush 되지 않은 변경 모두 본다.
+  private boolean writesInCurrentTransaction() {
+    return tableWriteInspector.writesInCurrentTransaction(em, TableVersions.MEMBER, TableVersions.TEAM);
+  }
+
+
+  private List<MemberTeamDto> fetchByIds(JPAQueryFactory factory, List<List<Long>> batches) {
+    QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    List<MemberTeamDto> rows = new ArrayList<>();
+    for (List<Long> batch : batches)
+      rows.addAll(factory.select(qMemberTeamDto)
+                         .from(member)
+                         .leftJoin(member.team, team)
+                         .where(member.id.in(batch))
+                         .fetch());
+    return rows;
+  }
+
+
+  private List<MemberTeamDto> fetchByIdsParallel(List<List<Long>> batches) {
+    List<Future<List<MemberTeamDto>>> futures = new ArrayList<>(batches.size());
+    for (List<Long> batch : batches)
+      futures.add(multiGetExecutor.submit(() -> {
+        EntityManager batchEm = em.getEntityManagerFactory().createEntityManager();
+        try {
+          return fetchByIds(new JPAQueryFactory(batchEm), List.of(batch));
+        } finally {
+          batchEm.close();
+        }
+      }));
+
+    List<MemberTeamDto> rows = new ArrayList<>();
+    try {
+      for (Future<List<MemberTeamDto>> future : futures)
+        rows.addAll(future.get());
+      return rows;
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while loading members by id", e);
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+
+  @Transactional(readOnly = true)
   public List<Member> findAll() {
     return em.createQuery("select m from Member m", Member.class)
+             .setHint(QueryHints.HINT_READONLY, readOnlyHint())
              .getResultList();
   }
 
 
+  // 영속성 컨텍스트 없이 읽는다. 스냅샷/1차 캐시가 없고 반환된 엔티티는 준영속 상태다.
+  public List<Member> findAllStateless() {
+    return withStatelessSession(session -> new HibernateQueryFactory(session).selectFrom(member)
+                                                                            .fetch());
+  }
+
+
+  // 전체 덤프용. 영속성 컨텍스트 없이 forward-only 커서로 한 행씩 넘기므로 메모리는 fetch size 만큼만 쓴다.
+  // 드라이버에 따라(PostgreSQL 등) autocommit 이면 fetch size 를 무시하고 전체를 읽으므로 읽기 전용 트랜잭션 안에서 연다.
+  @Transactional(readOnly = true)
+  public void forEachRow(MemberSearchCondition condition, Consumer<MemberTeamDto> consumer) {
+    MemberPredicates.rejectArchived(condition, "forEachRow");
+    QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    withStatelessSession(session -> {
+      HibernateQuery<MemberTeamDto> query = new HibernateQueryFactory(session).select(qMemberTeamDto)
+                                                                              .from(member)
+                                                                              .leftJoin(member.team, team)
+                                                                              .where(usernameEq(condition),
+                                                                                     teamNameEq(condition.getTeamName()),
+                                                                                     ageGoe(condition.getAgeGoe()),
+                                                                                     ageLoe(condition.getAgeLoe()))
+                                                                              .orderBy(member.id.asc())
+                                                                              .setFetchSize(exportFetchSize)
+                                                                              .setReadOnly(true);
+      try (CloseableIterator<MemberTeamDto> rows = query.iterate()) {
+        rows.forEachRemaining(consumer);
+      }
+      return null;
+    });
+  }
+
+
   public List<Member> findAll_Querydsl() {
     return queryFactory.selectFrom(member).fetch();
   }
 
 
+  @Transactional(readOnly = true)
   public List<Member> findByUsername(String username) {
     return em.createQuery("select m from Member m where m.username = :username", Member.class)
              .setParameter("username", username)
+             .setHint(QueryHints.HINT_READONLY, readOnlyHint())
              .getResultList();
   }
 
@@ -71,8 +280,13 @@ public class MemberJpaRepository {
 
 
   public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+    MemberPredicates.rejectArchived(condition, "searchByBuilder");
     BooleanBuilder builder = new BooleanBuilder();
-    builderAnd(builder, StringUtils::hasText, condition.getUsername(), member.username::eq);
+    if (condition.isIgnoreCase())
+      builderAnd(builder, StringUtils::hasText, Usernames.normalize(condition.getUsername()),
+                 member.usernameNormalized::eq);
+    else
+      builderAnd(builder, StringUtils::hasText, condition.getUsername(), member.username::eq);
     builderAnd(builder, StringUtils::hasText, condition.getTeamName(), team.name::eq);
     builderAnd(builder, Objects::nonNull, condition.getAgeGoe(), member.age::goe);
     builderAnd(builder, Objects::nonNull, condition.getAgeLoe(), member.age::loe);
@@ -93,12 +307,38 @@ public class MemberJpaRepository {
   }
 
 
+  // MemberRepositoryImpl.search 와 같은 설정을 따른다. 읽기 모델 -> team id 캐시 -> team 조인 순.
+  @Transactional(readOnly = true)
   public List<MemberTeamDto> search(MemberSearchCondition condition) {
+    MemberPredicates.rejectArchived(condition, "search");
+    if (readModelEnabled) {
+      viewMaintainer.ifAvailable(MemberTeamViewMaintainer::refreshPending);
+      return queryFactory.select(new QMemberTeamDto(memberTeamView.memberId, memberTeamView.username,
+                                                    memberTeamView.age, memberTeamView.teamId, memberTeamView.teamName))
+                         .from(memberTeamView)
+                         .where(MemberPredicates.readModelWhere(condition))
+                         .fetch();
+    }
+
+    if (usesTeamNameCache(condition)) {
+      if (teamNameCache.teamIds(condition.getTeamName()).isEmpty())
+        return new ArrayList<>();
+      List<MemberTeamDto> result = queryFactory.select(new QMemberTeamDto(member.id, member.username, member.age, member.team.id))
+                                               .from(member)
+                                               .where(usernameEq(condition),
+                                                      teamNameCache.memberTeamNameEq(condition.getTeamName()),
+                                                      ageGoe(condition.getAgeGoe()),
+                                                      ageLoe(condition.getAgeLoe()))
+                                               .fetch();
+      result.forEach(memberTeamDto -> memberTeamDto.setTeamName(condition.getTeamName()));
+      return result;
+    }
+
     QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
     return queryFactory.select(qMemberTeamDto)
                        .from(member)
                        .leftJoin(member.team, team)
-                       .where(usernameEq(condition.getUsername()),
+                       .where(usernameEq(condition),
                               teamNameEq(condition.getTeamName()),
                               ageGoe(condition.getAgeGoe()),
                               ageLoe(condition.getAgeLoe()))
@@ -106,34 +346,152 @@ public class MemberJpaRepository {
   }
 
 
+  @Transactional(readOnly = true)
   public List<Member> searchMember(MemberSearchCondition condition) {
+    MemberPredicates.rejectArchived(condition, "searchMember");
     return queryFactory.selectFrom(member)
                        .leftJoin(member.team, team)
-                       .where(usernameEq(condition.getUsername()),
+                       .where(usernameEq(condition),
                               teamNameEq(condition.getTeamName()),
                               ageGoe(condition.getAgeGoe()),
                               ageLoe(condition.getAgeLoe()))
+                       .setHint(QueryHints.HINT_READONLY, readOnlyHint())
                        .fetch();
   }
 
 
-  private BooleanExpression usernameEq(String username) {
-    return hasText(username)? member.username.eq(username): null;
+  public void forEachChunk(MemberSearchCondition condition, int chunkSize, Consumer<List<Member>> consumer) {
+    try (Stream<List<Member>> chunks = streamChunks(condition, chunkSize, false)) {
+      chunks.forEach(consumer);
+    }
+  }
+
+
+  // prefetch 하면 chunk 를 별도 EntityManager 로 읽으므로 호출자 트랜잭션의 미커밋 데이터는 보이지 않는다.
+  // 반환된 Stream 은 반드시 close 해야 한다.
+  public Stream<List<Member>> streamChunks(MemberSearchCondition condition, int chunkSize, boolean prefetch) {
+    MemberPredicates.rejectArchived(condition, "streamChunks");
+    if (!prefetch) {
+      Set<Object> callerEntities = managedMembers();
+      AtomicReference<List<Member>> previous = new AtomicReference<>(List.of());
+      MemberChunkIterator chunks = new MemberChunkIterator(lastId -> {
+        List<Member> chunk = fetchChunk(queryFactory, condition, lastId, chunkSize);
+        previous.set(chunk);
+        return chunk;
+      }, chunkSize, () -> detachChunk(previous.get(), callerEntities), null);
+      return chunkStream(chunks);
+    }
+
+    ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "member-chunk-prefetch");
+      thread.setDaemon(true);
+      return thread;
+    });
+    MemberChunkIterator chunks = new MemberChunkIterator(lastId -> fetchChunkDetached(condition, lastId, chunkSize),
+                                                         chunkSize, () -> {}, prefetcher);
+    return chunkStream(chunks).onClose(prefetcher::shutdownNow);
+  }
+
+
+  private Stream<List<Member>> chunkStream(MemberChunkIterator chunks) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL),
+                                false);
+  }
+
+
+  private List<Member> fetchChunk(JPAQueryFactory factory, MemberSearchCondition condition, Long lastId, int chunkSize) {
+    return factory.selectFrom(member)
+                  .leftJoin(member.team, team).fetchJoin()
+                  .where(idGt(lastId),
+                         usernameEq(condition),
+                         teamNameEq(condition.getTeamName()),
+                         ageGoe(condition.getAgeGoe()),
+                         ageLoe(condition.getAgeLoe()))
+                  .orderBy(member.id.asc())
+                  .limit(chunkSize)
+                  .fetch();
+  }
+
+
+  private List<Member> fetchChunkDetached(MemberSearchCondition condition, Long lastId, int chunkSize) {
+    EntityManager chunkEm = em.getEntityManagerFactory().createEntityManager();
+    try {
+      return fetchChunk(new JPAQueryFactory(chunkEm), condition, lastId, chunkSize);
+    } finally {
+      chunkEm.close();
+    }
+  }
+
+
+  // 이전 chunk 의 변경은 반영하고 그 chunk 의 member 만 분리해 메모리를 chunk 하나 크기로 유지한다.
+  // 호출 전부터 영속 상태였던 member 는 호출자의 것이므로 그대로 둔다. fetch join 된 team 은 team 수만큼만 남는다.
+  // 트랜잭션 없이 open-session-in-view 로 묶인 영속성 컨텍스트도 분리한다. 이때는 flush 할 트랜잭션이 없다.
+  private void detachChunk(List<Member> chunk, Set<Object> callerEntities) {
+    if (!persistenceContextBound())
+      return;
+    if (TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+      em.flush();
+    for (Member chunkMember : chunk)
+      if (!callerEntities.contains(chunkMember))
+        em.detach(chunkMember);
+  }
+
+
+  // 묶인 영속성 컨텍스트가 없으면 조회마다 새 영속성 컨텍스트가 쓰이므로 호출자 엔티티가 없다.
+  private Set<Object> managedMembers() {
+    Set<Object> managed = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (!persistenceContextBound())
+      return managed;
+    for (Map.Entry<Object, EntityEntry> entry : em.unwrap(SessionImplementor.class)
+                                                  .getPersistenceContextInternal()
+                                                  .reentrantSafeEntityEntries())
+      if (entry.getKey() instanceof Member)
+        managed.add(entry.getKey());
+    return managed;
+  }
+
+
+  // 트랜잭션이나 open-session-in-view 가 EntityManager 를 스레드에 묶어 두었는지. 묶여 있으면 조회 사이에 엔티티가 쌓인다.
+  private boolean persistenceContextBound() {
+    return TransactionSynchronizationManager.hasResource(em.getEntityManagerFactory());
+  }
+
+
+  // 읽기 전용 트랜잭션 안에서만 힌트를 건다.
+  // 호출자의 쓰기 트랜잭션에 참여했으면 반환된 엔티티의 변경이 flush 에 반영되어야 한다.
+  private boolean readOnlyHint() {
+    return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+  }
+
+
+  // 트랜잭션 안이면 같은 커넥션으로 열어 호출자의 미커밋 데이터도 보이게 한다.
+  private <T> T withStatelessSession(Function<StatelessSession, T> work) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      try (StatelessSession session = sessionFactory().openStatelessSession()) {
+        return work.apply(session);
+      }
+    }
+    return em.unwrap(Session.class).doReturningWork(connection -> {
+      try (StatelessSession session = sessionFactory().openStatelessSession(connection)) {
+        return work.apply(session);
+      }
+    });
   }
 
 
-  private BooleanExpression teamNameEq(String teamName) {
-    return hasText(teamName)? team.name.eq(teamName): null;
+  private SessionFactory sessionFactory() {
+    return em.getEntityManagerFactory().unwrap(SessionFactory.class);
   }
 
 
-  private BooleanExpression ageGoe(Integer ageGoe) {
-    return ageGoe == null? null: member.age.goe(ageGoe);
+  private boolean usesTeamNameCache(MemberSearchCondition condition) {
+    return teamNameCacheEnabled && hasText(condition.getTeamName());
   }
 
 
-  private BooleanExpression ageLoe(Integer ageLoe) {
-    return ageLoe == null? null:  member.age.loe(ageLoe);
+  private BooleanExpression idGt(Long lastId) {
+    return lastId == null? null: member.id.gt(lastId);
   }
 
 }
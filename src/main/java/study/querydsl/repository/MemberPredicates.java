@@ -0,0 +1,67 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.Usernames;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+import static study.querydsl.entity.QTeam.team;
+
+
+// 검색 조건 -> where 절. 리포지토리마다 같은 조건을 같은 방식으로 해석하도록 한곳에 둔다.
+final class MemberPredicates {
+
+  private MemberPredicates() {
+  }
+
+
+  // member_archive 를 함께 읽는 곳은 MemberJdbcRepository 뿐이다. 다른 곳에서 조용히 무시하지 않고 거부한다.
+  static void rejectArchived(MemberSearchCondition condition, String operation) {
+    if (condition.isIncludeArchived())
+      throw new InvalidSearchException("includeArchived is not supported for " + operation
+                                       + ", use MemberJdbcRepository");
+  }
+
+
+  // ignoreCase 면 같은 규칙으로 정규화한 값을 정규화 컬럼(인덱스)과 비교한다.
+  static BooleanExpression usernameEq(MemberSearchCondition condition) {
+    if (!hasText(condition.getUsername()))
+      return null;
+    if (condition.isIgnoreCase())
+      return member.usernameNormalized.eq(Usernames.normalize(condition.getUsername()));
+    return member.username.eq(condition.getUsername());
+  }
+
+
+  // team 조인이 있는 쿼리용. 조인 없이 거를 때는 TeamNameCache.memberTeamNameEq 를 쓴다.
+  static BooleanExpression teamNameEq(String teamName) {
+    return hasText(teamName)? team.name.eq(teamName): null;
+  }
+
+
+  static BooleanExpression ageGoe(Integer ageGoe) {
+    return ageGoe == null? null: member.age.goe(ageGoe);
+  }
+
+
+  static BooleanExpression ageLoe(Integer ageLoe) {
+    return ageLoe == null? null: member.age.loe(ageLoe);
+  }
+
+
+  static Predicate[] readModelWhere(MemberSearchCondition condition) {
+    return new Predicate[] {
+        !hasText(condition.getUsername())? null
+        : condition.isIgnoreCase()? memberTeamView.usernameNormalized.eq(Usernames.normalize(condition.getUsername()))
+        : memberTeamView.username.eq(condition.getUsername()),
+        hasText(condition.getTeamName())? memberTeamView.teamName.eq(condition.getTeamName()): null,
+        condition.getAgeGoe() == null? null: memberTeamView.age.goe(condition.getAgeGoe()),
+        condition.getAgeLoe() == null? null: memberTeamView.age.loe(condition.getAgeLoe())
+    };
+  }
+
+}
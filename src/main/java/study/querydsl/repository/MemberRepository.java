@@ -1,16 +1,51 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.SimpleExpression;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.querydsl.binding.QuerydslBinderCustomizer;
+import org.springframework.data.querydsl.binding.QuerydslBindings;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.support.InvalidSearchException;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 
 public interface MemberRepository extends JpaRepository<Member, Long>,
                                           MemberRepositoryCustom,
-                                          QuerydslPredicateExecutor<Member> {
+                                          QuerydslPredicateExecutor<Member>,
+                                          QuerydslBinderCustomizer<QMember> {
 
   List<Member> findByUsername(String username);
 
+
+  // /v5/members 파라미터 바인딩. 인덱스가 있는 경로만 허용한다.
+  // id, username 은 값이 여러 개면 IN, age 는 하나면 동등, 두 개면 between, team.name 은 동등 비교만 한다.
+  // age 값이 세 개 이상이면 뒤의 값을 버리지 않고 요청을 거부한다.
+  @Override
+  default void customize(QuerydslBindings bindings, QMember root) {
+    bindings.excludeUnlistedProperties(true);
+    bindings.including(root.id, root.username, root.age, root.team.name);
+    bindings.bind(root.id).all(MemberRepository::eqOrIn);
+    bindings.bind(root.username).all(MemberRepository::eqOrIn);
+    bindings.bind(root.team.name).first(SimpleExpression::eq);
+    bindings.bind(root.age).all((path, values) -> {
+      if (values.size() > 2)
+        throw new InvalidSearchException("age accepts one value or a from/to pair but got " + values.size());
+      Iterator<? extends Integer> iterator = values.iterator();
+      Integer from = iterator.next();
+      return Optional.of(iterator.hasNext()? path.between(from, iterator.next()): path.eq(from));
+    });
+  }
+
+
+  private static <T> Optional<Predicate> eqOrIn(SimpleExpression<T> path, Collection<? extends T> values) {
+    return Optional.of(values.size() == 1? path.eq(values.iterator().next()): path.in(values));
+  }
+
 }
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.dto.MemberSearchCondition;
@@ -17,4 +18,10 @@ public interface MemberRepositoryCustom {
 
   Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
 
+
+  Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, boolean exact);
+
+
+  Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable);
+
 }
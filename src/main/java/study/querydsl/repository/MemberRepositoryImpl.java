@@ -1,103 +1,423 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.QueryResults;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.support.ReplaceVisitor;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.support.PageableExecutionUtils;
+import study.querydsl.dto.ApproximatePage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
-import study.querydsl.entity.Member;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+import study.querydsl.support.VersionedCache;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberPredicates.ageGoe;
+import static study.querydsl.repository.MemberPredicates.ageLoe;
+import static study.querydsl.repository.MemberPredicates.teamNameEq;
+import static study.querydsl.repository.MemberPredicates.usernameEq;
 
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+  private static final String TEAM_NAME = "teamName";
+  private static final Map<String, ComparableExpressionBase<?>> SORTABLE =
+      Map.of("id", member.id, "username", member.username, "age", member.age, TEAM_NAME, team.name);
+  private static final Map<String, ComparableExpressionBase<?>> MEMBER_SORTABLE =
+      Map.of("id", member.id, "username", member.username, "age", member.age);
+  private static final Map<String, ComparableExpressionBase<?>> READ_MODEL_SORTABLE =
+      Map.of("id", memberTeamView.memberId, "username", memberTeamView.username, "age", memberTeamView.age,
+             TEAM_NAME, memberTeamView.teamName);
+  // searchByPredicate 에 허용하는 경로와 연산자. 선택도 있는 경로가 하나는 동등/IN 으로 걸려 있어야 한다.
+  private static final Set<Path<?>> PREDICATE_PATHS = Set.of(member.id, member.username, member.age, member.team.name);
+  private static final Set<Path<?>> SELECTIVE_PATHS = Set.of(member.id, member.username, member.team.name);
+  private static final Set<Operator> PREDICATE_OPERATORS = Set.of(Ops.EQ, Ops.IN, Ops.BETWEEN);
+
+  private final EntityManager em;
   private final JPAQueryFactory queryFactory;
+  private final TableWriteInspector tableWriteInspector;
+  private final ObjectProvider<MemberTeamViewMaintainer> viewMaintainer;
+  private final TeamNameCache teamNameCache;
+  private final boolean teamNameCacheEnabled;
+  private final boolean readModelEnabled;
+  private final long deferredJoinOffset;
+  private final long countLimit;
+  private final VersionedCache<String, Long> tableSize;
+  private final PagePrefetcher pagePrefetcher;
+  private final int predicateMaxInSize;
+  private final int predicateMaxPageSize;
 
 
-  public MemberRepositoryImpl(EntityManager em) {
+  public MemberRepositoryImpl(EntityManager em, TeamNameCache teamNameCache, TableVersions tableVersions,
+                              TableWriteInspector tableWriteInspector, PagePrefetcher pagePrefetcher, ObjectProvider<MemberTeamViewMaintainer> viewMaintainer,
+                              @Value("${querydsl.search.team-name-cache:true}") boolean teamNameCacheEnabled,
+                              @Value("${querydsl.read-model.enabled:false}") boolean readModelEnabled,
+                              @Value("${querydsl.search.deferred-join-offset:1000}") long deferredJoinOffset,
+                              @Value("${querydsl.search.count-limit:10000}") long countLimit,
+                              @Value("${querydsl.predicate.max-in-size:100}") int predicateMaxInSize,
+                              @Value("${querydsl.predicate.max-page-size:100}") int predicateMaxPageSize) {
+    this.em = em;
     this.queryFactory = new JPAQueryFactory(em);
+    this.tableWriteInspector = tableWriteInspector;
+    this.viewMaintainer = viewMaintainer;
+    this.teamNameCache = teamNameCache;
+    this.teamNameCacheEnabled = teamNameCacheEnabled;
+    this.readModelEnabled = readModelEnabled;
+    this.deferredJoinOffset = deferredJoinOffset;
+    this.countLimit = countLimit;
+    this.tableSize = new VersionedCache<>(1, 0, () -> tableVersions.token(TableVersions.MEMBER));
+    this.pagePrefetcher = pagePrefetcher;
+    this.predicateMaxInSize = predicateMaxInSize;
+    this.predicateMaxPageSize = predicateMaxPageSize;
   }
 
 
   @Override
   public List<MemberTeamDto> search(MemberSearchCondition condition) {
-    return searchQuery(condition).fetch();
+    MemberPredicates.rejectArchived(condition, "search");
+    if (noMatchingTeam(condition))
+      return new ArrayList<>();
+    return fillTeamName(searchQuery(condition).fetch(), condition);
   }
 
 
   @Override
   public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+    MemberPredicates.rejectArchived(condition, "searchPageSimple");
+    MemberSearchCondition snapshot = snapshot(condition);
+    return pagePrefetcher.page("searchPageSimple", snapshot, pageable, p -> loadPageSimple(snapshot, p));
+  }
+
+
+  @Override
+  public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+    MemberPredicates.rejectArchived(condition, "searchPageComplex");
+    MemberSearchCondition snapshot = snapshot(condition);
+    return pagePrefetcher.page("searchPageComplex", snapshot, pageable, p -> loadPageComplex(snapshot, p));
+  }
+
+
+  private Page<MemberTeamDto> loadPageSimple(MemberSearchCondition condition, Pageable pageable) {
+    if (noMatchingTeam(condition))
+      return Page.empty(pageable);
+    if (defersJoin(pageable))
+      return new PageImpl<>(fetchPageDeferred(condition, pageable), pageable, countQuery(condition).fetchCount());
     QueryResults<MemberTeamDto> results = searchQuery(condition)
+                                              .orderBy(orderBy(condition, pageable.getSort()))
                                               .offset(pageable.getOffset())
                                               .limit(pageable.getPageSize())
                                               .fetchResults();
-    return new PageImpl<>(results.getResults(), pageable, results.getTotal());
+    return new PageImpl<>(fillTeamName(results.getResults(), condition), pageable, results.getTotal());
   }
 
 
+  private Page<MemberTeamDto> loadPageComplex(MemberSearchCondition condition, Pageable pageable) {
+    if (noMatchingTeam(condition))
+      return Page.empty(pageable);
+    List<MemberTeamDto> contents = fetchPage(condition, pageable);
+//    long total = countQuery(condition).fetchCount();
+//    return new PageImpl<>(contents, pageable, total);
+    return PageableExecutionUtils.getPage(contents, pageable, countQuery(condition)::fetchCount);
+  }
+
+
+  // exact=false 면 count 를 countLimit 까지만 센다. 조건이 없으면 member 테이블 버전별로 캐시한 전체 건수를 쓴다.
+  // member 에 쓴 트랜잭션의 전체 건수는 미커밋 행을 포함하므로 캐시를 거치지 않는다.
   @Override
-  public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+  public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, boolean exact) {
+    MemberPredicates.rejectArchived(condition, "searchPageComplex");
+    if (exact)
+      return searchPageComplex(condition, pageable);
+    if (noMatchingTeam(condition))
+      return new ApproximatePage<>(new ArrayList<>(), pageable, 0, false, countLimit);
+
+    List<MemberTeamDto> contents = fetchPage(condition, pageable);
+    if (pageable.getOffset() == 0 && contents.size() < pageable.getPageSize())
+      return new ApproximatePage<>(contents, pageable, contents.size(), false, countLimit);
+    if (isUnfiltered(condition))
+      return new ApproximatePage<>(contents, pageable, totalSize(), false, countLimit);
+
+    // countLimit 다음 행이 있는지만 확인하고, 없을 때만 count 를 센다. 어느 쪽도 id 를 JVM 으로 읽지 않는다.
+    boolean exceeds = idQuery(condition, Sort.unsorted()).offset(countLimit).fetchFirst() != null;
+    long total = exceeds? countLimit: countQuery(condition).fetchCount();
+    return new ApproximatePage<>(contents, pageable, total, exceeds, countLimit);
+  }
+
+
+  // 바인딩된 predicate 는 실행 전에 비용을 검사한다. 허용 범위를 벗어나면 InvalidSearchException.
+  @Override
+  public Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable) {
+    Predicate where = predicate instanceof BooleanBuilder? ((BooleanBuilder) predicate).getValue(): predicate;
+    if (where == null || !checkPredicate(where))
+      throw new InvalidSearchException("at least one of id, username, team.name is required");
+    if (pageable.getPageSize() > predicateMaxPageSize)
+      throw new InvalidSearchException("page size must not exceed " + predicateMaxPageSize);
+
+    // member.team.name 을 조인 별칭 team.name 으로 바꿔 암시적 조인이 하나 더 생기지 않게 한다.
+    Predicate joined = (Predicate) where.accept(new ReplaceVisitor<Void>() {
+      @Override
+      public Expression<?> visit(Path<?> expr, Void context) {
+        return expr.equals(member.team.name)? team.name: super.visit(expr, context);
+      }
+    }, null);
+
+    List<MemberTeamDto> contents = queryFactory.select(new QMemberTeamDto(member.id, member.username, member.age,
+                                                                          team.id, team.name))
+                                               .from(member)
+                                               .leftJoin(member.team, team)
+                                               .where(joined)
+                                               .orderBy(orderBy(pageable.getSort(), SORTABLE, member.id))
+                                               .offset(pageable.getOffset())
+                                               .limit(pageable.getPageSize())
+                                               .fetch();
+    JPAQuery<?> countQuery = queryFactory.selectFrom(member)
+                                         .leftJoin(member.team, team)
+                                         .where(joined);
+    return PageableExecutionUtils.getPage(contents, pageable, countQuery::fetchCount);
+  }
+
+
+  // 허용되지 않은 경로/연산자나 너무 큰 IN 이면 예외. 선택도 있는 필터가 포함됐는지 반환한다.
+  private boolean checkPredicate(Expression<?> expression) {
+    if (!(expression instanceof Operation))
+      throw new InvalidSearchException("unsupported predicate: " + expression);
+    Operation<?> operation = (Operation<?>) expression;
+    if (operation.getOperator() == Ops.AND) {
+      boolean selective = false;
+      for (Expression<?> arg : operation.getArgs())
+        selective |= checkPredicate(arg);
+      return selective;
+    }
+
+    if (!PREDICATE_OPERATORS.contains(operation.getOperator()) || !PREDICATE_PATHS.contains(operation.getArg(0)))
+      throw new InvalidSearchException("unsupported predicate: " + operation);
+    if (operation.getOperator() == Ops.IN
+        && ((Collection<?>) ((Constant<?>) operation.getArg(1)).getConstant()).size() > predicateMaxInSize)
+      throw new InvalidSearchException("IN list must not exceed " + predicateMaxInSize + " values");
+    return operation.getOperator() != Ops.BETWEEN && SELECTIVE_PATHS.contains(operation.getArg(0));
+  }
+
+
+  private MemberSearchCondition snapshot(MemberSearchCondition condition) {
+    MemberSearchCondition snapshot = new MemberSearchCondition();
+    BeanUtils.copyProperties(condition, snapshot);
+    return snapshot;
+  }
+
+
+  private List<MemberTeamDto> fetchPage(MemberSearchCondition condition, Pageable pageable) {
+    if (defersJoin(pageable))
+      return fetchPageDeferred(condition, pageable);
     List<MemberTeamDto> contents = searchQuery(condition)
+                                       .orderBy(orderBy(condition, pageable.getSort()))
                                        .offset(pageable.getOffset())
                                        .limit(pageable.getPageSize())
                                        .fetch();
-//    long total = countQuery(condition).fetchCount();
-//    return new PageImpl<>(contents, pageable, total);
-    return PageableExecutionUtils.getPage(contents, pageable, countQuery(condition)::fetchCount);
+    return fillTeamName(contents, condition);
+  }
+
+
+  private long totalSize() {
+    if (tableWriteInspector.writesInCurrentTransaction(em, TableVersions.MEMBER))
+      return countAll();
+    return tableSize.get(TableVersions.MEMBER, t -> countAll());
+  }
+
+
+  private long countAll() {
+    Long count = queryFactory.select(member.count()).from(member).fetchOne();
+    return count == null? 0: count;
+  }
+
+
+  private boolean isUnfiltered(MemberSearchCondition condition) {
+    return !hasText(condition.getUsername()) && !hasText(condition.getTeamName())
+           && condition.getAgeGoe() == null && condition.getAgeLoe() == null;
+  }
+
+
+  private boolean defersJoin(Pageable pageable) {
+    return !readModelEnabled && pageable.getOffset() >= deferredJoinOffset;
   }
 
 
+  // 깊은 offset 은 좁은 id 만으로 건너뛰고, 해당 페이지의 id 에 대해서만 team 을 조인해 컬럼을 읽는다.
+  private List<MemberTeamDto> fetchPageDeferred(MemberSearchCondition condition, Pageable pageable) {
+    List<Long> ids = idQuery(condition, pageable.getSort()).orderBy(orderBy(condition, pageable.getSort()))
+                                                           .offset(pageable.getOffset())
+                                                           .limit(pageable.getPageSize())
+                                                           .fetch();
+    if (ids.isEmpty())
+      return new ArrayList<>();
+
+    QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    Map<Long, MemberTeamDto> rows = new HashMap<>();
+    queryFactory.select(qMemberTeamDto)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids))
+                .fetch()
+                .forEach(memberTeamDto -> rows.put(memberTeamDto.getMemberId(), memberTeamDto));
+
+    List<MemberTeamDto> contents = new ArrayList<>(ids.size());
+    for (Long id : ids)
+      if (rows.containsKey(id))
+        contents.add(rows.get(id));
+    return contents;
+  }
+
+
+  // 읽기 모델은 현재 트랜잭션의 벌크 쓰기를 반영한 뒤에 읽는다.
+  private JPAQueryFactory readModel() {
+    viewMaintainer.ifAvailable(MemberTeamViewMaintainer::refreshPending);
+    return queryFactory;
+  }
+
+
+  private JPAQuery<Long> idQuery(MemberSearchCondition condition, Sort sort) {
+    if (readModelEnabled)
+      return readModel().select(memberTeamView.memberId)
+                         .from(memberTeamView)
+                         .where(MemberPredicates.readModelWhere(condition));
+
+    if (usesTeamNameCache(condition))
+      return queryFactory.select(member.id)
+                         .from(member)
+                         .where(usernameEq(condition),
+                                teamNameCache.memberTeamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()));
+
+    JPAQuery<Long> query = queryFactory.select(member.id).from(member);
+    if (hasText(condition.getTeamName()) || sort.getOrderFor(TEAM_NAME) != null)
+      query.leftJoin(member.team, team);
+    return query.where(usernameEq(condition),
+                       teamNameEq(condition.getTeamName()),
+                       ageGoe(condition.getAgeGoe()),
+                       ageLoe(condition.getAgeLoe()));
+  }
+
+
+  // 읽기 모델이 켜져 있으면 단일 테이블에서 읽는다.
+  // 아니면 team 이름 필터는 캐시된 team id 로 바꾸고, team 컬럼은 조건 값으로 채워 조인을 생략한다.
   private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition) {
+    if (readModelEnabled)
+      return readModel().select(new QMemberTeamDto(memberTeamView.memberId, memberTeamView.username,
+                                                    memberTeamView.age, memberTeamView.teamId, memberTeamView.teamName))
+                         .from(memberTeamView)
+                         .where(MemberPredicates.readModelWhere(condition));
+
+    if (usesTeamNameCache(condition))
+      return queryFactory.select(new QMemberTeamDto(member.id, member.username, member.age, member.team.id))
+                         .from(member)
+                         .where(usernameEq(condition),
+                                teamNameCache.memberTeamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()));
+
     QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
     return queryFactory.select(qMemberTeamDto)
                        .from(member)
                        .leftJoin(member.team, team)
-                       .where(usernameEq(condition.getUsername()),
+                       .where(usernameEq(condition),
                               teamNameEq(condition.getTeamName()),
                               ageGoe(condition.getAgeGoe()),
                               ageLoe(condition.getAgeLoe()));
   }
 
 
-  private JPAQuery<Member> countQuery(MemberSearchCondition condition) {
+  private JPAQuery<?> countQuery(MemberSearchCondition condition) {
+    if (readModelEnabled)
+      return readModel().selectFrom(memberTeamView)
+                         .where(MemberPredicates.readModelWhere(condition));
+
+    if (usesTeamNameCache(condition))
+      return queryFactory.selectFrom(member)
+                         .where(usernameEq(condition),
+                                teamNameCache.memberTeamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()));
+
     return queryFactory.selectFrom(member)
                        .leftJoin(member.team, team)
-                       .where(usernameEq(condition.getUsername()),
+                       .where(usernameEq(condition),
                               teamNameEq(condition.getTeamName()),
                               ageGoe(condition.getAgeGoe()),
                               ageLoe(condition.getAgeLoe()));
   }
 
 
-  private BooleanExpression usernameEq(String username) {
-    return hasText(username)? member.username.eq(username): null;
+  // 정렬 가능한 경로는 인덱스가 있는 컬럼으로 제한한다. 페이지 경계가 흔들리지 않도록 항상 id 를 마지막에 붙인다.
+  private OrderSpecifier<?>[] orderBy(MemberSearchCondition condition, Sort sort) {
+    if (readModelEnabled)
+      return orderBy(sort, READ_MODEL_SORTABLE, memberTeamView.memberId);
+    if (usesTeamNameCache(condition))
+      return orderBy(sort, MEMBER_SORTABLE, member.id);
+    return orderBy(sort, SORTABLE, member.id);
+  }
+
+
+  private OrderSpecifier<?>[] orderBy(Sort sort, Map<String, ComparableExpressionBase<?>> sortable,
+                                      ComparableExpressionBase<?> tieBreaker) {
+    List<OrderSpecifier<?>> orders = new ArrayList<>();
+    for (Sort.Order order : sort) {
+      if (!SORTABLE.containsKey(order.getProperty()))
+        throw new InvalidSearchException("unsupported sort property: " + order.getProperty());
+      // team 이름 필터가 걸린 조인 없는 조회에서는 teamName 이 상수이므로 건너뛴다.
+      ComparableExpressionBase<?> path = sortable.get(order.getProperty());
+      if (path != null)
+        orders.add(order.isAscending()? path.asc(): path.desc());
+    }
+    orders.add(tieBreaker.asc());
+    return orders.toArray(new OrderSpecifier<?>[0]);
   }
 
 
-  private BooleanExpression teamNameEq(String teamName) {
-    return hasText(teamName)? team.name.eq(teamName): null;
+  private boolean usesTeamNameCache(MemberSearchCondition condition) {
+    return !readModelEnabled && teamNameCacheEnabled && hasText(condition.getTeamName());
   }
 
 
-  private BooleanExpression ageGoe(Integer ageGoe) {
-    return ageGoe == null? null: member.age.goe(ageGoe);
+  private boolean noMatchingTeam(MemberSearchCondition condition) {
+    return usesTeamNameCache(condition) && teamNameCache.teamIds(condition.getTeamName()).isEmpty();
   }
 
 
-  private BooleanExpression ageLoe(Integer ageLoe) {
-    return ageLoe == null? null:  member.age.loe(ageLoe);
+  private List<MemberTeamDto> fillTeamName(List<MemberTeamDto> contents, MemberSearchCondition condition) {
+    if (usesTeamNameCache(condition))
+      contents.forEach(memberTeamDto -> memberTeamDto.setTeamName(condition.getTeamName()));
+    return contents;
   }
 
 }
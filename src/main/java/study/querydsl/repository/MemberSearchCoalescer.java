@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.support.SingleFlight;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+// MemberRepositoryCustom 앞단. 동시에 들어온 동일 검색은 DB 실행 한 번을 공유한다.
+@Component
+public class MemberSearchCoalescer implements MemberRepositoryCustom {
+
+  private final MemberRepository memberRepository;
+  private final boolean enabled;
+  private final SingleFlight<List<Object>, Object> singleFlight;
+
+
+  public MemberSearchCoalescer(MemberRepository memberRepository,
+                               @Value("${querydsl.search.coalescing.enabled:true}") boolean enabled,
+                               @Value("${querydsl.search.coalescing.timeout-ms:2000}") long timeoutMillis,
+                               @Value("${querydsl.search.coalescing.max-tracked-keys:1000}") int maxTrackedKeys) {
+    this.memberRepository = memberRepository;
+    this.enabled = enabled;
+    this.singleFlight = new SingleFlight<>(timeoutMillis, maxTrackedKeys, MemberSearchCoalescer::statsKey);
+  }
+
+
+  @Override
+  public List<MemberTeamDto> search(MemberSearchCondition condition) {
+    return coalesce(() -> memberRepository.search(condition), "search", condition);
+  }
+
+
+  @Override
+  public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+    return coalesce(() -> memberRepository.searchPageSimple(condition, pageable), "searchPageSimple", condition, pageable);
+  }
+
+
+  @Override
+  public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+    return coalesce(() -> memberRepository.searchPageComplex(condition, pageable), "searchPageComplex", condition, pageable);
+  }
+
+
+  @Override
+  public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, boolean exact) {
+    return coalesce(() -> memberRepository.searchPageComplex(condition, pageable, exact),
+                    "searchPageComplex", condition, pageable, exact);
+  }
+
+
+  @Override
+  public Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable) {
+    return coalesce(() -> memberRepository.searchByPredicate(predicate, pageable), "searchByPredicate", predicate, pageable);
+  }
+
+
+  public Map<String, Map<String, Long>> stats() {
+    return singleFlight.stats();
+  }
+
+
+  // 조건 값(username 등)은 노출하지 않는다. 메서드 이름과 key 전체의 해시만 쓴다.
+  private static String statsKey(List<Object> key) {
+    String hash = DigestUtils.md5DigestAsHex(String.valueOf(key).getBytes(StandardCharsets.UTF_8));
+    return key.get(0) + "#" + hash.substring(0, 12);
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private <T> T coalesce(Supplier<T> search, Object... key) {
+    if (!enabled)
+      return search.get();
+    return (T) singleFlight.execute(Arrays.asList(key), search::get);
+  }
+
+}
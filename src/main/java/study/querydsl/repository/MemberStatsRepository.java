@@ -0,0 +1,163 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.AgeBucketDto;
+import study.querydsl.dto.AgeHistogramDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.InvalidSearchException;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+import study.querydsl.support.VersionedCache;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.repository.MemberPredicates.ageGoe;
+import static study.querydsl.repository.MemberPredicates.ageLoe;
+import static study.querydsl.repository.MemberPredicates.usernameEq;
+
+
+@Repository
+public class MemberStatsRepository {
+
+  // then/otherwise 는 파라미터가 아닌 리터럴로 둔다. select 절 sum 안의 파라미터는 타입을 추론하지 못한다.
+  private static final NumberExpression<Long> ONE = Expressions.numberTemplate(Long.class, "1");
+  private static final NumberExpression<Long> ZERO = Expressions.numberTemplate(Long.class, "0");
+
+  private final EntityManager em;
+  private final JPAQueryFactory queryFactory;
+  private final TeamNameCache teamNameCache;
+  private final TableWriteInspector tableWriteInspector;
+  private final boolean preAggregation;
+  private final int maxBoundaries;
+  private final VersionedCache<String, NavigableMap<Integer, Long>> ageDistribution;
+
+
+  public MemberStatsRepository(EntityManager em, TeamNameCache teamNameCache, TableVersions tableVersions,
+                               TableWriteInspector tableWriteInspector,
+                               @Value("${querydsl.histogram.pre-aggregation:true}") boolean preAggregation,
+                               @Value("${querydsl.histogram.max-boundaries:50}") int maxBoundaries) {
+    this.em = em;
+    this.queryFactory = new JPAQueryFactory(em);
+    this.teamNameCache = teamNameCache;
+    this.tableWriteInspector = tableWriteInspector;
+    this.preAggregation = preAggregation;
+    this.maxBoundaries = maxBoundaries;
+    this.ageDistribution = new VersionedCache<>(1, 0, () -> tableVersions.token(TableVersions.MEMBER));
+  }
+
+
+  // boundaries 는 오름차순 구간 경계. n 개면 n + 1 개 구간이 된다.
+  // username/team 조건이 없으면 member 버전별로 캐시한 나이별 건수에서 계산하고, 아니면 구간마다 sum(case) 를 둔 쿼리 한 번으로 센다.
+  public AgeHistogramDto ageHistogram(MemberSearchCondition condition, List<Integer> boundaries) {
+    checkBoundaries(boundaries);
+    MemberPredicates.rejectArchived(condition, "histograms");
+
+    long[] counts = preAggregation && !hasText(condition.getUsername()) && !hasText(condition.getTeamName())
+                    ? countFromDistribution(condition, boundaries)
+                    : countByQuery(condition, boundaries);
+
+    List<AgeBucketDto> buckets = new ArrayList<>(counts.length);
+    for (int i = 0; i < counts.length; ++i)
+      buckets.add(new AgeBucketDto(i == 0? null: boundaries.get(i - 1),
+                                   i == boundaries.size()? null: boundaries.get(i),
+                                   counts[i]));
+    return new AgeHistogramDto(buckets);
+  }
+
+
+  private long[] countByQuery(MemberSearchCondition condition, List<Integer> boundaries) {
+    long[] counts = new long[boundaries.size() + 1];
+    if (hasText(condition.getTeamName()) && teamNameCache.teamIds(condition.getTeamName()).isEmpty())
+      return counts;
+
+    List<Expression<?>> sums = new ArrayList<>();
+    for (int i = 0; i <= boundaries.size(); ++i)
+      sums.add(new CaseBuilder().when(inBucket(boundaries, i)).then(ONE).otherwise(ZERO).sum());
+
+    Tuple row = queryFactory.select(sums.toArray(new Expression<?>[0]))
+                            .from(member)
+                            .where(usernameEq(condition),
+                                   teamNameEq(condition.getTeamName()),
+                                   ageGoe(condition.getAgeGoe()),
+                                   ageLoe(condition.getAgeLoe()))
+                            .fetchOne();
+
+    for (int i = 0; row != null && i < counts.length; ++i) {
+      Number sum = (Number) row.get(i, Object.class);
+      counts[i] = sum == null? 0: sum.longValue();
+    }
+    return counts;
+  }
+
+
+  // member 에 쓴 트랜잭션에서는 커밋 전 건수가 다른 요청과 공유되지 않도록 캐시를 거치지 않는다.
+  private long[] countFromDistribution(MemberSearchCondition condition, List<Integer> boundaries) {
+    NavigableMap<Integer, Long> distribution = tableWriteInspector.writesInCurrentTransaction(em, TableVersions.MEMBER)
+                                               ? loadAgeDistribution()
+                                               : ageDistribution.get(TableVersions.MEMBER, t -> loadAgeDistribution());
+    int from = condition.getAgeGoe() == null? Integer.MIN_VALUE: condition.getAgeGoe();
+    int to = condition.getAgeLoe() == null? Integer.MAX_VALUE: condition.getAgeLoe();
+
+    long[] counts = new long[boundaries.size() + 1];
+    if (from > to)
+      return counts;
+    for (Map.Entry<Integer, Long> entry : distribution.subMap(from, true, to, true).entrySet()) {
+      int position = Collections.binarySearch(boundaries, entry.getKey());
+      counts[position >= 0? position + 1: -position - 1] += entry.getValue();
+    }
+    return counts;
+  }
+
+
+  private NavigableMap<Integer, Long> loadAgeDistribution() {
+    NavigableMap<Integer, Long> distribution = new TreeMap<>();
+    for (Tuple row : queryFactory.select(member.age, member.count())
+                                 .from(member)
+                                 .groupBy(member.age)
+                                 .fetch())
+      distribution.put(row.get(member.age), row.get(member.count()));
+    return Collections.unmodifiableNavigableMap(distribution);
+  }
+
+
+  private void checkBoundaries(List<Integer> boundaries) {
+    if (boundaries == null || boundaries.isEmpty() || boundaries.size() > maxBoundaries)
+      throw new InvalidSearchException("boundaries must contain 1 to " + maxBoundaries + " values");
+    for (int i = 0; i < boundaries.size(); ++i) {
+      if (boundaries.get(i) == null || (i > 0 && boundaries.get(i) <= boundaries.get(i - 1)))
+        throw new InvalidSearchException("boundaries must be strictly increasing: " + boundaries);
+    }
+  }
+
+
+  private BooleanExpression inBucket(List<Integer> boundaries, int index) {
+    if (index == 0)
+      return member.age.lt(boundaries.get(0));
+    if (index == boundaries.size())
+      return member.age.goe(boundaries.get(index - 1));
+    return member.age.goe(boundaries.get(index - 1)).and(member.age.lt(boundaries.get(index)));
+  }
+
+
+  // team 조인 없이 캐시된 team id 로 거른다.
+  private BooleanExpression teamNameEq(String teamName) {
+    return hasText(teamName)? teamNameCache.memberTeamNameEq(teamName): null;
+  }
+
+}
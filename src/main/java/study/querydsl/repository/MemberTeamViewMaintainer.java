@@ -0,0 +1,235 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+
+// member_team_view 를 member/team 쓰기와 같은 트랜잭션, 같은 커넥션에서 동기적으로 갱신한다.
+// 엔티티 쓰기는 이벤트로 바로 반영한다. JPQL/네이티브 벌크 쓰기는 TableWriteInspector 에서 받아 트랜잭션에 남겨 두고,
+// 뷰를 읽기 전(refreshPending)과 커밋 직전에 반영한다. 벌크 update 는 붙인 change_seq 로 바뀐 행만 다시 만들고,
+// 순번을 알 수 없는 쓰기(insert ... select)면 전체를 다시 만든다.
+// JdbcTemplate 쓰기는 TableWriteInspector 를 거치지 않는다. MemberArchiver 는 직접 보정하고, 그 외 경로는 rebuild() 를 호출해야 한다.
+@Component
+@ConditionalOnProperty(name = "querydsl.read-model.enabled", havingValue = "true")
+public class MemberTeamViewMaintainer implements PostInsertEventListener, PostUpdateEventListener,
+                                                 PostDeleteEventListener {
+
+  private static final String DELETE_MEMBER = "delete from member_team_view where member_id = ?";
+  private static final String INSERT_MEMBER =
+      "insert into member_team_view (member_id, username, username_normalized, age, team_id, team_name)"
+      + " select m.member_id, m.username, m.username_normalized, m.age, t.team_id, t.name"
+      + " from member m left join team t on t.team_id = m.team_id where m.member_id = ?";
+  private static final String UPDATE_TEAM_NAME = "update member_team_view set team_name = ? where team_id = ?";
+  private static final String DETACH_TEAM =
+      "update member_team_view set team_id = null, team_name = null where team_id = ?";
+  private static final String DELETE_ALL = "delete from member_team_view";
+  private static final String INSERT_ALL =
+      "insert into member_team_view (member_id, username, username_normalized, age, team_id, team_name)"
+      + " select m.member_id, m.username, m.username_normalized, m.age, t.team_id, t.name"
+      + " from member m left join team t on t.team_id = m.team_id";
+  private static final String DELETE_CHANGED_MEMBERS =
+      "delete from member_team_view where member_id in (select member_id from member where change_seq = ?)";
+  private static final String INSERT_CHANGED_MEMBERS = INSERT_ALL + " where m.change_seq = ?";
+  private static final String UPDATE_CHANGED_TEAMS =
+      "update member_team_view v set team_name = (select t.name from team t where t.team_id = v.team_id)"
+      + " where v.team_id in (select team_id from team where change_seq = ?)";
+
+  private final EntityManagerFactory emf;
+  private final JdbcTemplate jdbcTemplate;
+  private final TableWriteInspector tableWriteInspector;
+  private final boolean rebuildOnStartup;
+
+
+  public MemberTeamViewMaintainer(EntityManagerFactory emf, JdbcTemplate jdbcTemplate,
+                                  TableWriteInspector tableWriteInspector,
+                                  @Value("${querydsl.read-model.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+    this.emf = emf;
+    this.jdbcTemplate = jdbcTemplate;
+    this.tableWriteInspector = tableWriteInspector;
+    this.rebuildOnStartup = rebuildOnStartup;
+  }
+
+
+  @PostConstruct
+  public void register() {
+    EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                                        .getServiceRegistry()
+                                        .getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_INSERT, this);
+    registry.appendListeners(EventType.POST_UPDATE, this);
+    registry.appendListeners(EventType.POST_DELETE, this);
+    tableWriteInspector.addBulkWriteListener(this::bulkWritten);
+  }
+
+
+  // 뷰는 쓰기마다 함께 유지되므로 시작할 때 다시 만들 필요가 없다.
+  // 읽기 모델을 켜기 전에 쌓인 데이터를 채울 때만 켠다. 테이블 크기에 비례해 시작이 늦어진다.
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuildOnStartup() {
+    if (rebuildOnStartup)
+      rebuild();
+  }
+
+
+  @Transactional
+  public void rebuild() {
+    jdbcTemplate.update(DELETE_ALL);
+    jdbcTemplate.update(INSERT_ALL);
+  }
+
+
+  // 현재 트랜잭션의 벌크 쓰기를 뷰에 반영한다. 뷰를 읽는 쪽이 조회 전에 호출한다.
+  public void refreshPending() {
+    PendingBulkWrites pending = (PendingBulkWrites) TransactionSynchronizationManager.getResource(this);
+    if (pending == null || pending.isEmpty())
+      return;
+    if (pending.rebuild) {
+      jdbcTemplate.update(DELETE_ALL);
+      jdbcTemplate.update(INSERT_ALL);
+    } else {
+      for (Long seq : pending.memberSeqs) {
+        jdbcTemplate.update(DELETE_CHANGED_MEMBERS, seq);
+        jdbcTemplate.update(INSERT_CHANGED_MEMBERS, seq);
+      }
+      for (Long seq : pending.teamSeqs)
+        jdbcTemplate.update(UPDATE_CHANGED_TEAMS, seq);
+    }
+    pending.clear();
+  }
+
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    if (event.getEntity() instanceof Member)
+      refreshMember(event.getSession(), event.getId());
+  }
+
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    if (event.getEntity() instanceof Member)
+      refreshMember(event.getSession(), event.getId());
+    else if (event.getEntity() instanceof Team)
+      execute(event.getSession(), UPDATE_TEAM_NAME, ((Team) event.getEntity()).getName(), event.getId());
+  }
+
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    if (event.getEntity() instanceof Member)
+      execute(event.getSession(), DELETE_MEMBER, event.getId());
+    else if (event.getEntity() instanceof Team)
+      execute(event.getSession(), DETACH_TEAM, event.getId());
+  }
+
+
+  // Hibernate 5 의 추상 메서드(이름 오타 그대로). requiresPostCommitHandling 의 기본 구현이 이를 호출한다.
+  @Override
+  @SuppressWarnings("deprecation")
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    return false;
+  }
+
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return false;
+  }
+
+
+  // 벌크 쓰기는 JPQL/네이티브 쿼리라 트랜잭션 안에서만 실행된다.
+  private void bulkWritten(String table, Long changeSeq) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+      return;
+    PendingBulkWrites pending = (PendingBulkWrites) TransactionSynchronizationManager.getResource(this);
+    if (pending == null) {
+      pending = new PendingBulkWrites();
+      TransactionSynchronizationManager.bindResource(this, pending);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void beforeCommit(boolean readOnly) {
+          refreshPending();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(MemberTeamViewMaintainer.this);
+        }
+      });
+    }
+    if (changeSeq == null)
+      pending.rebuild = true;
+    else if (TableVersions.MEMBER.equals(table))
+      pending.memberSeqs.add(changeSeq);
+    else
+      pending.teamSeqs.add(changeSeq);
+  }
+
+
+  private void refreshMember(EventSource session, Serializable memberId) {
+    execute(session, DELETE_MEMBER, memberId);
+    execute(session, INSERT_MEMBER, memberId);
+  }
+
+
+  private void execute(EventSource session, String sql, Object... parameters) {
+    session.doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        for (int i = 0; i < parameters.length; ++i)
+          statement.setObject(i + 1, parameters[i]);
+        statement.executeUpdate();
+      }
+    });
+  }
+
+
+  private static class PendingBulkWrites {
+
+    private final Set<Long> memberSeqs = new LinkedHashSet<>();
+    private final Set<Long> teamSeqs = new LinkedHashSet<>();
+    private boolean rebuild;
+
+
+    boolean isEmpty() {
+      return !rebuild && memberSeqs.isEmpty() && teamSeqs.isEmpty();
+    }
+
+
+    void clear() {
+      memberSeqs.clear();
+      teamSeqs.clear();
+      rebuild = false;
+    }
+
+  }
+
+}
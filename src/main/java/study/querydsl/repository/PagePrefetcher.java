@@ -0,0 +1,104 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+import study.querydsl.support.VersionedCache;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+
+// 페이지 N 을 돌려준 뒤 N+1 을 비동기로 읽어 짧게 캐시한다. 순차적으로 페이지를 넘기는 클라이언트용.
+// 비동기 로딩은 트랜잭션 밖에서 실행되므로 커밋된 데이터만 보인다.
+// member/team 에 쓴 트랜잭션은 자신의 변경이 보여야 하므로 캐시도, 미리 읽기도 거치지 않는다.
+@Component
+public class PagePrefetcher implements DisposableBean {
+
+  private final EntityManager em;
+  private final TableWriteInspector tableWriteInspector;
+  private final boolean enabled;
+  private final VersionedCache<List<Object>, Page<?>> pages;
+  private final Set<List<Object>> pending = ConcurrentHashMap.newKeySet();
+  private final ThreadPoolExecutor executor;
+
+
+  public PagePrefetcher(EntityManager em, TableVersions tableVersions, TableWriteInspector tableWriteInspector,
+                        @Value("${querydsl.search.prefetch.enabled:false}") boolean enabled,
+                        @Value("${querydsl.search.prefetch.ttl-ms:30000}") long ttlMillis,
+                        @Value("${querydsl.search.prefetch.max-pages:200}") int maxPages,
+                        @Value("${querydsl.search.prefetch.threads:2}") int threads) {
+    this.em = em;
+    this.tableWriteInspector = tableWriteInspector;
+    this.enabled = enabled;
+    this.pages = new VersionedCache<>(maxPages, ttlMillis,
+                                      () -> tableVersions.token(TableVersions.MEMBER, TableVersions.TEAM));
+    this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 4),
+                                           r -> {
+                                             Thread thread = new Thread(r, "member-page-prefetch");
+                                             thread.setDaemon(true);
+                                             return thread;
+                                           });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+
+  // loader 는 비동기로도 호출되므로 호출자가 나중에 바꿀 수 있는 객체를 참조하면 안 된다.
+  @SuppressWarnings("unchecked")
+  public <T> Page<T> page(String query, Object conditionKey, Pageable pageable, Function<Pageable, Page<T>> loader) {
+    if (!enabled || pageable.isUnpaged()
+        || tableWriteInspector.writesInCurrentTransaction(em, TableVersions.MEMBER, TableVersions.TEAM))
+      return loader.apply(pageable);
+
+    Page<T> page = (Page<T>) pages.getIfPresent(key(query, conditionKey, pageable));
+    if (page == null)
+      page = loader.apply(pageable);
+    if (page.hasNext())
+      prefetch(key(query, conditionKey, pageable.next()), pageable.next(), loader);
+    return page;
+  }
+
+
+  @Override
+  public void destroy() {
+    executor.shutdownNow();
+  }
+
+
+  private <T> void prefetch(List<Object> key, Pageable next, Function<Pageable, Page<T>> loader) {
+    if (pages.getIfPresent(key) != null || !pending.add(key))
+      return;
+
+    String version = pages.version();
+    try {
+      executor.execute(() -> {
+        try {
+          pages.put(key, loader.apply(next), version);
+        } finally {
+          pending.remove(key);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // 밀려 있으면 건너뛴다. 다음 요청은 직접 읽는다.
+      pending.remove(key);
+    }
+  }
+
+
+  private List<Object> key(String query, Object conditionKey, Pageable pageable) {
+    return Arrays.asList(query, conditionKey, pageable);
+  }
+
+}
@@ -0,0 +1,66 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+import study.querydsl.support.VersionedCache;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+
+// team name -> team id 목록. team 테이블에 쓰기가 있으면 전체가 무효가 된다.
+// 이름이 유일하지 않을 수 있으므로 id 목록을 캐시한다.
+// team 에 쓴 트랜잭션에서는 자신의 변경이 보이도록, 또 미커밋 id 가 다른 요청과 공유되지 않도록 캐시를 거치지 않는다.
+@Component
+public class TeamNameCache {
+
+  private final EntityManager em;
+  private final JPAQueryFactory queryFactory;
+  private final TableWriteInspector tableWriteInspector;
+  private final VersionedCache<String, List<Long>> cache;
+
+
+  public TeamNameCache(EntityManager em, TableVersions tableVersions, TableWriteInspector tableWriteInspector,
+                       @Value("${querydsl.team.name-cache-size:1000}") int maxSize) {
+    this.em = em;
+    this.queryFactory = new JPAQueryFactory(em);
+    this.tableWriteInspector = tableWriteInspector;
+    this.cache = new VersionedCache<>(maxSize, 0, () -> tableVersions.token(TableVersions.TEAM));
+  }
+
+
+  public List<Long> teamIds(String teamName) {
+    if (tableWriteInspector.writesInCurrentTransaction(em, TableVersions.TEAM))
+      return loadTeamIds(teamName);
+    return cache.get(teamName, this::loadTeamIds);
+  }
+
+
+  // member 에서 team 조인 없이 FK 로 필터링한다.
+  public BooleanExpression memberTeamNameEq(String teamName) {
+    return member.team.id.in(teamIds(teamName));
+  }
+
+
+  public void invalidate() {
+    cache.invalidateAll();
+  }
+
+
+  private List<Long> loadTeamIds(String teamName) {
+    return Collections.unmodifiableList(queryFactory.select(team.id)
+                                                    .from(team)
+                                                    .where(team.name.eq(teamName))
+                                                    .orderBy(team.id.asc())
+                                                    .fetch());
+  }
+
+}
@@ -0,0 +1,15 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.TeamMembersDto;
+
+import java.util.List;
+
+public interface TeamRepositoryCustom {
+
+  List<TeamMembersDto> findTeamsWithMembers(Pageable pageable);
+
+
+  List<TeamMembersDto> findTeamsWithMembers(Pageable pageable, int batchSize);
+
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.support.IdBatches;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+  private final JPAQueryFactory queryFactory;
+  private final int defaultBatchSize;
+
+
+  public TeamRepositoryImpl(EntityManager em,
+                            @Value("${querydsl.team.members-batch-size:100}") int defaultBatchSize) {
+    this.queryFactory = new JPAQueryFactory(em);
+    this.defaultBatchSize = defaultBatchSize;
+  }
+
+
+  @Override
+  public List<TeamMembersDto> findTeamsWithMembers(Pageable pageable) {
+    return findTeamsWithMembers(pageable, defaultBatchSize);
+  }
+
+
+  // team 을 먼저 페이징하고 member 는 team id IN 배치로 읽는다. fetch join 으로 인한 카테시안 곱이 없다.
+  @Override
+  public List<TeamMembersDto> findTeamsWithMembers(Pageable pageable, int batchSize) {
+    List<Tuple> teams = queryFactory.select(team.id, team.name)
+                                    .from(team)
+                                    .orderBy(team.id.asc())
+                                    .offset(pageable.getOffset())
+                                    .limit(pageable.getPageSize())
+                                    .fetch();
+
+    Map<Long, TeamMembersDto> result = new LinkedHashMap<>();
+    for (Tuple t : teams)
+      result.put(t.get(team.id), new TeamMembersDto(t.get(team.id), t.get(team.name)));
+
+    for (List<Long> teamIds : IdBatches.partition(new ArrayList<>(result.keySet()), batchSize))
+      for (MemberTeamDto memberTeamDto : membersOf(teamIds))
+        result.get(memberTeamDto.getTeamId()).getMembers().add(memberTeamDto);
+
+    return new ArrayList<>(result.values());
+  }
+
+
+  private List<MemberTeamDto> membersOf(List<Long> teamIds) {
+    QMemberTeamDto qMemberTeamDto = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    return queryFactory.select(qMemberTeamDto)
+                       .from(member)
+                       .join(member.team, team)
+                       .where(team.id.in(teamIds))
+                       .orderBy(member.id.asc())
+                       .fetch();
+  }
+
+}
@@ -0,0 +1,78 @@
+package study.querydsl.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+
+// member/team 변경 순번. DB 시퀀스 change_sequence(import.sql)에서 받으므로 인스턴스 사이에서도, 재시작 후에도 겹치지 않는다.
+// 트랜잭션에서 할당한 순번은 커밋/롤백 전까지 in-flight 로 남고, watermark() 는 그보다 작은 값까지만 돌려준다.
+// 늦게 커밋되는 작은 순번을 변경 피드가 건너뛰지 않게 하기 위함이다. in-flight 는 이 인스턴스가 할당한 것만 안다.
+// next() 는 트랜잭션에 묶인 커넥션으로 시퀀스만 읽는다. 할당과 in-flight 등록 사이에 watermark 가 끼지 않도록 락 안에서 읽는다.
+// TableWriteInspector 가 의존하므로 EntityManagerFactory 에 의존하는 빈(JdbcTemplate 등)을 주입받지 않는다.
+@Component
+public class ChangeSequence {
+
+  private static final String NEXT_VALUE = "select next value for change_sequence";
+  private static final List<String> TABLES = List.of("member", "team", "member_tombstone", "member_archive");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final NavigableSet<Long> inFlight = new TreeSet<>();
+  private long last;
+
+
+  public ChangeSequence(DataSource dataSource) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
+
+
+  public long next() {
+    long seq;
+    boolean tracked = TransactionSynchronizationManager.isSynchronizationActive();
+    synchronized (this) {
+      Long value = jdbcTemplate.queryForObject(NEXT_VALUE, Long.class);
+      seq = value == null? 0: value;
+      last = Math.max(last, seq);
+      if (tracked)
+        inFlight.add(seq);
+    }
+    if (tracked)
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          synchronized (ChangeSequence.this) {
+            inFlight.remove(seq);
+          }
+        }
+      });
+    return seq;
+  }
+
+
+  // 이 값 이하의 순번은 모두 커밋되었거나 롤백되었다(이 인스턴스 기준).
+  // 다른 인스턴스가 커밋한 순번도 보이도록 커밋된 최대값과 비교한다. 보관된 member 의 순번도 포함한다.
+  public long watermark() {
+    long committed = committedMax();
+    synchronized (this) {
+      last = Math.max(last, committed);
+      return inFlight.isEmpty()? last: inFlight.first() - 1;
+    }
+  }
+
+
+  private long committedMax() {
+    long max = 0;
+    for (String table : TABLES) {
+      Long seq = jdbcTemplate.queryForObject("select coalesce(max(change_seq), 0) from " + table, Long.class);
+      max = Math.max(max, seq == null? 0: seq);
+    }
+    return max;
+  }
+
+}
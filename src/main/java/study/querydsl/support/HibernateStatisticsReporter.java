@@ -0,0 +1,135 @@
+package study.querydsl.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+// hibernate.generate_statistics 가 켜져 있을 때만 값이 쌓인다. 스냅샷은 카운터를 읽기만 한다.
+@Component
+public class HibernateStatisticsReporter {
+
+  private static final Class<?>[] ENTITIES = {Member.class, Team.class};
+  private static final String[] COLLECTIONS = {Team.class.getName() + ".members"};
+
+  private final Statistics statistics;
+
+
+  public HibernateStatisticsReporter(EntityManagerFactory emf) {
+    this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+  }
+
+
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("enabled", statistics.isStatisticsEnabled());
+    if (!statistics.isStatisticsEnabled())
+      return snapshot;
+
+    snapshot.put("startTime", statistics.getStartTime());
+    snapshot.put("global", global());
+
+    Map<String, Object> entities = new LinkedHashMap<>();
+    for (Class<?> entity : ENTITIES)
+      entities.put(entity.getSimpleName(), entity(statistics.getEntityStatistics(entity.getName())));
+    snapshot.put("entities", entities);
+
+    Map<String, Object> collections = new LinkedHashMap<>();
+    for (String role : COLLECTIONS)
+      collections.put(role, collection(statistics.getCollectionStatistics(role)));
+    snapshot.put("collections", collections);
+
+    Map<String, Object> queries = new LinkedHashMap<>();
+    for (String query : statistics.getQueries())
+      queries.put(query, query(statistics.getQueryStatistics(query)));
+    snapshot.put("queries", queries);
+    return snapshot;
+  }
+
+
+  public void reset() {
+    statistics.clear();
+  }
+
+
+  private Map<String, Object> global() {
+    Map<String, Object> global = new LinkedHashMap<>();
+    global.put("sessionOpenCount", statistics.getSessionOpenCount());
+    global.put("transactionCount", statistics.getTransactionCount());
+    global.put("flushCount", statistics.getFlushCount());
+    global.put("prepareStatementCount", statistics.getPrepareStatementCount());
+    global.put("entityLoadCount", statistics.getEntityLoadCount());
+    global.put("entityFetchCount", statistics.getEntityFetchCount());
+    global.put("collectionLoadCount", statistics.getCollectionLoadCount());
+    global.put("collectionFetchCount", statistics.getCollectionFetchCount());
+    global.put("queryExecutionCount", statistics.getQueryExecutionCount());
+    global.put("queryExecutionMaxTime", statistics.getQueryExecutionMaxTime());
+    global.put("queryPlanCacheHitCount", statistics.getQueryPlanCacheHitCount());
+    global.put("queryPlanCacheMissCount", statistics.getQueryPlanCacheMissCount());
+    global.put("queryPlanCacheHitRatio", ratio(statistics.getQueryPlanCacheHitCount(),
+                                               statistics.getQueryPlanCacheMissCount()));
+    global.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+    global.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+    global.put("secondLevelCachePutCount", statistics.getSecondLevelCachePutCount());
+    global.put("secondLevelCacheHitRatio", ratio(statistics.getSecondLevelCacheHitCount(),
+                                                 statistics.getSecondLevelCacheMissCount()));
+    global.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+    global.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+    return global;
+  }
+
+
+  private Map<String, Object> entity(EntityStatistics entity) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("loadCount", entity.getLoadCount());
+    result.put("fetchCount", entity.getFetchCount());
+    result.put("insertCount", entity.getInsertCount());
+    result.put("updateCount", entity.getUpdateCount());
+    result.put("deleteCount", entity.getDeleteCount());
+    result.put("optimisticFailureCount", entity.getOptimisticFailureCount());
+    result.put("cacheHitCount", entity.getCacheHitCount());
+    result.put("cacheMissCount", entity.getCacheMissCount());
+    result.put("cacheHitRatio", ratio(entity.getCacheHitCount(), entity.getCacheMissCount()));
+    return result;
+  }
+
+
+  private Map<String, Object> collection(CollectionStatistics collection) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("loadCount", collection.getLoadCount());
+    result.put("fetchCount", collection.getFetchCount());
+    result.put("recreateCount", collection.getRecreateCount());
+    result.put("updateCount", collection.getUpdateCount());
+    result.put("removeCount", collection.getRemoveCount());
+    return result;
+  }
+
+
+  private Map<String, Object> query(QueryStatistics query) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("executionCount", query.getExecutionCount());
+    result.put("executionRowCount", query.getExecutionRowCount());
+    result.put("executionAvgTime", query.getExecutionAvgTime());
+    result.put("executionMaxTime", query.getExecutionMaxTime());
+    result.put("planCacheHitCount", query.getPlanCacheHitCount());
+    result.put("planCacheMissCount", query.getPlanCacheMissCount());
+    result.put("cacheHitCount", query.getCacheHitCount());
+    result.put("cacheMissCount", query.getCacheMissCount());
+    return result;
+  }
+
+
+  private double ratio(long hit, long miss) {
+    return hit + miss == 0? 0: (double) hit / (hit + miss);
+  }
+
+}
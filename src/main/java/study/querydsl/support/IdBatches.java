@@ -0,0 +1,42 @@
+package study.querydsl.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+// IN 절 파라미터 개수를 2의 거듭제곱으로 맞춰(마지막 id 반복) 쿼리 플랜 캐시를 재사용한다.
+public final class IdBatches {
+
+  private IdBatches() {
+  }
+
+
+  public static List<List<Long>> partition(Collection<Long> ids, int batchSize) {
+    if (batchSize <= 0)
+      throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+
+    List<List<Long>> batches = new ArrayList<>();
+    List<Long> batch = new ArrayList<>(batchSize);
+    for (Long id : ids) {
+      batch.add(id);
+      if (batch.size() == batchSize) {
+        batches.add(batch);
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    if (!batch.isEmpty())
+      batches.add(pad(batch, batchSize));
+    return batches;
+  }
+
+
+  static List<Long> pad(List<Long> batch, int batchSize) {
+    int padded = Math.min(Integer.highestOneBit(batch.size() - 1) << 1, batchSize);
+    Long last = batch.get(batch.size() - 1);
+    while (batch.size() < padded)
+      batch.add(last);
+    return batch;
+  }
+
+}
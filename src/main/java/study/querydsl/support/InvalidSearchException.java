@@ -0,0 +1,14 @@
+package study.querydsl.support;
+
+
+// 클라이언트가 보낸 검색 조건/정렬/페이지가 허용 범위를 벗어났을 때. 컨트롤러가 400 과 메시지로 응답한다.
+// 메시지는 그대로 클라이언트에 노출되므로 요청 값 외의 내부 정보를 담지 않는다.
+// IllegalArgumentException 이면 Spring Data 리포지토리 프록시가 InvalidDataAccessApiUsageException 으로 바꿔
+// 컨트롤러의 400 처리에 잡히지 않으므로 RuntimeException 을 바로 상속한다.
+public class InvalidSearchException extends RuntimeException {
+
+  public InvalidSearchException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,167 @@
+package study.querydsl.support;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+
+// 행을 CSV/NDJSON 으로 인코딩해 gzip 으로 내보낸다. 줄 버퍼와 바이트 버퍼를 재사용하므로 메모리는 행 수와 무관하다.
+// 대상 스트림에 동기로 쓰므로 클라이언트가 느리면 write 가 막히고 호출자(커서)도 그만큼 늦게 읽는다.
+// finish() 를 호출해야 gzip trailer 가 붙는다. finish() 없이 close() 하면 trailer 없이 끝나므로
+// 받는 쪽은 잘린 스트림으로 알아챈다. 어느 쪽도 대상 스트림은 닫지 않는다.
+public class RowExportWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public enum Format {
+    CSV, NDJSON
+  }
+
+  private final Format format;
+  private final String[] columns;
+  private final ExportGzipStream out;
+  private final StringBuilder line = new StringBuilder(256);
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                                                               .onMalformedInput(CodingErrorAction.REPLACE)
+                                                               .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+
+  public RowExportWriter(OutputStream out, Format format, String... columns) throws IOException {
+    this.out = new ExportGzipStream(out);
+    this.format = format;
+    this.columns = columns;
+    if (format == Format.CSV) {
+      for (int i = 0; i < columns.length; ++i) {
+        if (i > 0)
+          line.append(',');
+        appendCsv(columns[i]);
+      }
+      endLine();
+    }
+  }
+
+
+  public void write(Object... values) throws IOException {
+    if (values.length != columns.length)
+      throw new IllegalArgumentException("expected " + columns.length + " values but got " + values.length);
+
+    for (int i = 0; i < values.length; ++i) {
+      if (format == Format.CSV) {
+        if (i > 0)
+          line.append(',');
+        appendCsv(values[i]);
+      } else {
+        line.append(i == 0? '{': ',');
+        appendJsonString(columns[i]);
+        line.append(':');
+        appendJson(values[i]);
+      }
+    }
+    if (format == Format.NDJSON)
+      line.append('}');
+    endLine();
+  }
+
+
+  // 모든 행을 쓴 뒤에만 호출한다.
+  public void finish() throws IOException {
+    drain();
+    out.finish();
+    out.flush();
+  }
+
+
+  // finish() 전이면 버퍼의 남은 행과 trailer 를 쓰지 않고 압축기만 정리한다.
+  @Override
+  public void close() {
+    out.release();
+  }
+
+
+  private void endLine() throws IOException {
+    line.append('\n');
+    CharBuffer chars = CharBuffer.wrap(line);
+    encoder.reset();
+    CoderResult result;
+    while ((result = encoder.encode(chars, buffer, true)).isOverflow())
+      drain();
+    if (result.isError())
+      result.throwException();
+    while (encoder.flush(buffer).isOverflow())
+      drain();
+    line.setLength(0);
+  }
+
+
+  private void drain() throws IOException {
+    out.write(buffer.array(), 0, buffer.position());
+    buffer.clear();
+  }
+
+
+  private void appendCsv(Object value) {
+    if (value == null)
+      return;
+    String s = value.toString();
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+      line.append(s);
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+      if (c == '"')
+        line.append('"');
+      line.append(c);
+    }
+    line.append('"');
+  }
+
+
+  private void appendJson(Object value) {
+    if (value == null)
+      line.append("null");
+    else if (value instanceof Number || value instanceof Boolean)
+      line.append(value);
+    else
+      appendJsonString(value.toString());
+  }
+
+
+  private void appendJsonString(String s) {
+    line.append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        line.append('\\').append(c);
+      else if (c < 0x20)
+        line.append(String.format("\\u%04x", (int) c));
+      else
+        line.append(c);
+    }
+    line.append('"');
+  }
+
+
+  private static class ExportGzipStream extends GZIPOutputStream {
+
+    ExportGzipStream(OutputStream out) throws IOException {
+      super(out, BUFFER_SIZE);
+    }
+
+
+    void release() {
+      def.end();
+    }
+
+  }
+
+}
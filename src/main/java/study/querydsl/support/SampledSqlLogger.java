@@ -0,0 +1,168 @@
+package study.querydsl.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// 요청 스레드에서는 샘플링 판단과 큐 적재만 한다. 포맷팅/출력은 별도 스레드가 한다.
+// 바인딩 값은 남기지 않고 개수만 남긴다. SQL 에 직접 들어간 문자열/숫자 리터럴도 ? 로 가린다.
+// 느린 쿼리와 실패한 쿼리는 항상 남긴다. 실패 메시지는 드라이버가 만든 그대로라 값이 들어 있을 수 있다.
+@Component
+@ConditionalOnProperty(name = "querydsl.sql-logging.enabled", havingValue = "true")
+public class SampledSqlLogger extends SimpleJdbcEventListener implements DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger("study.querydsl.sql");
+
+  private final double sampleRate;
+  private final long slowThresholdNanos;
+  private final BlockingQueue<Event> queue;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread writer;
+
+
+  public SampledSqlLogger(@Value("${querydsl.sql-logging.sample-rate:0.01}") double sampleRate,
+                          @Value("${querydsl.sql-logging.slow-threshold-ms:100}") long slowThresholdMillis,
+                          @Value("${querydsl.sql-logging.queue-capacity:10000}") int queueCapacity) {
+    this.sampleRate = sampleRate;
+    this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.writer = new Thread(this::drain, "sampled-sql-logger");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+
+  @Override
+  public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+    boolean slow = timeElapsedNanos >= slowThresholdNanos;
+    if (!slow && e == null && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+      return;
+
+    Event event = new Event(statementInformation.getSql(), timeElapsedNanos, slow, e,
+                            statementInformation.getConnectionInformation().getConnectionId());
+    if (!queue.offer(event))
+      dropped.incrementAndGet();
+  }
+
+
+  public long getDropped() {
+    return dropped.get();
+  }
+
+
+  @Override
+  public void destroy() {
+    writer.interrupt();
+  }
+
+
+  private void drain() {
+    try {
+      while (!Thread.currentThread().isInterrupted())
+        write(queue.take());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  private void write(Event event) {
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(event.elapsedNanos);
+    String raw = event.sql == null? "": event.sql;
+    int params = parameterCount(raw);
+    String sql = redact(raw).replaceAll("\\s+", " ").trim();
+    if (event.error != null)
+      log.warn("sql error elapsedMs={} connection={} params={} sql=\"{}\" error=\"{}\"",
+               elapsedMillis, event.connectionId, params, sql, event.error.getMessage());
+    else if (event.slow)
+      log.warn("sql slow elapsedMs={} connection={} params={} sql=\"{}\"",
+               elapsedMillis, event.connectionId, params, sql);
+    else
+      log.info("sql sampled elapsedMs={} connection={} params={} sql=\"{}\"",
+               elapsedMillis, event.connectionId, params, sql);
+  }
+
+
+  // 문자열('' 이스케이프 포함)과 숫자 리터럴을 ? 로 바꾼다.
+  // 식별자 안의 숫자(member0_)와 "..." 로 감싼 식별자는 그대로 둔다. 주석 안의 값은 가리지 않는다.
+  static String redact(String sql) {
+    StringBuilder redacted = new StringBuilder(sql.length());
+    int i = 0;
+    while (i < sql.length()) {
+      char c = sql.charAt(i);
+      int end = i + 1;
+      if (c == '\'') {
+        while (end < sql.length() && (sql.charAt(end) != '\'' || sql.startsWith("''", end)))
+          end += sql.startsWith("''", end)? 2: 1;
+        redacted.append('?');
+        i = Math.min(end + 1, sql.length());
+        continue;
+      }
+      if (c == '"') {
+        end = sql.indexOf('"', i + 1);
+        end = end < 0? sql.length(): end + 1;
+      } else if (Character.isLetter(c) || c == '_') {
+        while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_'))
+          ++end;
+      } else if (Character.isDigit(c)) {
+        while (end < sql.length() && (Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '.'))
+          ++end;
+        redacted.append('?');
+        i = end;
+        continue;
+      }
+      redacted.append(sql, i, end);
+      i = end;
+    }
+    return redacted.toString();
+  }
+
+
+  // 문자열 리터럴 안의 ? 는 세지 않는다.
+  static int parameterCount(String sql) {
+    int count = 0;
+    boolean quoted = false;
+    for (int i = 0; i < sql.length(); ++i) {
+      char c = sql.charAt(i);
+      if (c == '\'')
+        quoted = !quoted;
+      else if (c == '?' && !quoted)
+        ++count;
+    }
+    return count;
+  }
+
+
+  private static class Event {
+
+    private final String sql;
+    private final long elapsedNanos;
+    private final boolean slow;
+    private final SQLException error;
+    private final int connectionId;
+
+
+    Event(String sql, long elapsedNanos, boolean slow, SQLException error, int connectionId) {
+      this.sql = sql;
+      this.elapsedNanos = elapsedNanos;
+      this.slow = slow;
+      this.error = error;
+      this.connectionId = connectionId;
+    }
+
+  }
+
+}
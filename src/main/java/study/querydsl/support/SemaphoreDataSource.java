@@ -0,0 +1,85 @@
+package study.querydsl.support;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+// 동시에 빌릴 수 있는 커넥션 수를 세마포어로 제한한다. 요청 스레드 수가 아니라 permit 이 DB 동시성을 정한다.
+// permit 은 Connection.close() 에서 한 번만 반납한다.
+public class SemaphoreDataSource extends DelegatingDataSource {
+
+  private final Semaphore permits;
+  private final long timeoutMillis;
+
+
+  public SemaphoreDataSource(DataSource target, int permits, long timeoutMillis) {
+    super(target);
+    this.permits = new Semaphore(permits, true);
+    this.timeoutMillis = timeoutMillis;
+  }
+
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    acquire();
+    try {
+      return releasing(super.getConnection());
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    acquire();
+    try {
+      return releasing(super.getConnection(username, password));
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+
+  public int availablePermits() {
+    return permits.availablePermits();
+  }
+
+
+  private void acquire() throws SQLException {
+    try {
+      if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+        throw new SQLTransientConnectionException("no connection permit within " + timeoutMillis + "ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLTransientConnectionException("interrupted while waiting for a connection permit", e);
+    }
+  }
+
+
+  private Connection releasing(Connection connection) {
+    AtomicBoolean released = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                                               (proxy, method, args) -> {
+      if (method.getName().equals("close") && released.compareAndSet(false, true))
+        permits.release();
+      try {
+        return method.invoke(connection, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    });
+  }
+
+}
@@ -0,0 +1,122 @@
+package study.querydsl.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+// 같은 key 로 동시에 들어온 호출은 먼저 들어온 호출(leader)의 결과를 공유한다.
+// 대기가 timeout 을 넘으면 follower 는 직접 실행한다.
+// 통계는 statsKey 로 바꾼 이름으로 모은다. key 에 사용자 입력이 들어가면 노출해도 되는 값으로 바꿔야 한다.
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final long timeoutMillis;
+  private final Function<? super K, String> statsKey;
+  private final Map<String, KeyStats> stats;
+
+
+  public SingleFlight(long timeoutMillis, int maxTrackedKeys) {
+    this(timeoutMillis, maxTrackedKeys, String::valueOf);
+  }
+
+
+  public SingleFlight(long timeoutMillis, int maxTrackedKeys, Function<? super K, String> statsKey) {
+    this.timeoutMillis = timeoutMillis;
+    this.statsKey = statsKey;
+    this.stats = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, KeyStats> eldest) {
+        return size() > maxTrackedKeys;
+      }
+    };
+  }
+
+
+  public V execute(K key, Supplier<V> supplier) {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> leader = inFlight.putIfAbsent(key, call);
+    if (leader == null)
+      return lead(key, call, supplier);
+
+    KeyStats keyStats = stats(key);
+    try {
+      V value = leader.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      keyStats.shared.incrementAndGet();
+      return value;
+    } catch (TimeoutException e) {
+      keyStats.timeouts.incrementAndGet();
+      keyStats.executions.incrementAndGet();
+      return supplier.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for in-flight call: " + key, e);
+    } catch (ExecutionException e) {
+      // leader 의 실패도 공유한 결과다.
+      keyStats.shared.incrementAndGet();
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error)
+        throw (Error) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+
+  public Map<String, Map<String, Long>> stats() {
+    Map<String, Map<String, Long>> snapshot = new LinkedHashMap<>();
+    synchronized (stats) {
+      stats.forEach((key, keyStats) -> snapshot.put(key, keyStats.snapshot()));
+    }
+    return snapshot;
+  }
+
+
+  private V lead(K key, CompletableFuture<V> call, Supplier<V> supplier) {
+    stats(key).executions.incrementAndGet();
+    try {
+      V value = supplier.get();
+      call.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, call);
+    }
+  }
+
+
+  private KeyStats stats(K key) {
+    synchronized (stats) {
+      return stats.computeIfAbsent(statsKey.apply(key), k -> new KeyStats());
+    }
+  }
+
+
+  private static class KeyStats {
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+
+    Map<String, Long> snapshot() {
+      Map<String, Long> snapshot = new LinkedHashMap<>();
+      snapshot.put("executions", executions.get());
+      snapshot.put("shared", shared.get());
+      snapshot.put("timeouts", timeouts.get());
+      return snapshot;
+    }
+
+  }
+
+}
@@ -0,0 +1,46 @@
+package study.querydsl.support;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// 테이블별 쓰기 버전 (벌크 연산 포함). epoch 는 재시작 후 이전 토큰과 충돌하지 않게 한다.
+@Component
+public class TableVersions {
+
+  public static final String MEMBER = "member";
+  public static final String TEAM = "team";
+
+  private final long epoch = System.currentTimeMillis();
+  private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+
+  public void bump(String table) {
+    versions.computeIfAbsent(normalize(table), t -> new AtomicLong())
+            .incrementAndGet();
+  }
+
+
+  public long version(String table) {
+    AtomicLong version = versions.get(normalize(table));
+    return version == null? 0: version.get();
+  }
+
+
+  public String token(String... tables) {
+    StringBuilder token = new StringBuilder().append(epoch);
+    for (String table : tables)
+      token.append('-').append(version(table));
+    return token.toString();
+  }
+
+
+  private String normalize(String table) {
+    return table.toLowerCase(Locale.ROOT);
+  }
+
+}
@@ -0,0 +1,203 @@
+package study.querydsl.support;
+
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+// flush, JPQL/네이티브 벌크 연산 모두 여기를 거친다.
+// 커밋 전에 읽은 데이터로 만든 토큰이 남지 않도록 트랜잭션 종료 시 한 번 더 올린다.
+// SET 목록에서 change_seq 를 직접 쓰지 않는 member/team 벌크 update 에는 순번을 붙여 변경 피드에 잡히게 한다.
+// member 벌크 update 는 last_active_at 도 갱신해 MemberArchiver 가 방금 바뀐 member 를 옮기지 않게 한다.
+// username 만 바꾸는 member 벌크 update 는 username_normalized(NFKC, SQL 로 계산할 수 없다)가 어긋나므로 거부한다.
+// member/team 벌크 쓰기는 엔티티 이벤트가 없으므로 BulkWriteListener 에 알린다.
+// 변경 피드가 삭제를 기록하면(querydsl.changes.record-deletes) member 벌크 delete 는 tombstone 을 남길 수 없으므로 거부한다.
+// 엔티티 삭제는 ChangeFeedRecorder 가 tombstone 을 남긴다.
+@Component
+public class TableWriteInspector implements StatementInspector {
+
+  private static final Pattern WRITE =
+      Pattern.compile("^\\s*(?:/\\*.*?\\*/\\s*)*(?:insert\\s+into|update|delete\\s+from)\\s+(\\w+)",
+                      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern BULK_UPDATE =
+      Pattern.compile("^(\\s*(?:/\\*.*?\\*/\\s*)*update\\s+(member|team)\\s+set\\s+)(.*)$",
+                      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern SETS_CHANGE_SEQ =
+      Pattern.compile("(?:^|,)\\s*change_seq\\s*=", Pattern.CASE_INSENSITIVE);
+  private static final Pattern SETS_LAST_ACTIVE_AT =
+      Pattern.compile("(?:^|,)\\s*last_active_at\\s*=", Pattern.CASE_INSENSITIVE);
+  private static final Pattern SETS_USERNAME =
+      Pattern.compile("(?:^|,)\\s*username\\s*=", Pattern.CASE_INSENSITIVE);
+  private static final Pattern SETS_USERNAME_NORMALIZED =
+      Pattern.compile("(?:^|,)\\s*username_normalized\\s*=", Pattern.CASE_INSENSITIVE);
+  private static final Pattern MEMBER_DELETE =
+      Pattern.compile("^\\s*(?:/\\*.*?\\*/\\s*)*delete\\s+from\\s+member\\b",
+                      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern INSERT_SELECT =
+      Pattern.compile("^\\s*(?:/\\*.*?\\*/\\s*)*insert\\s+into\\s+(?:member|team)\\s*\\([^)]*\\)\\s*select\\b",
+                      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+  private static final Pattern WHERE = Pattern.compile("\\bwhere\\b", Pattern.CASE_INSENSITIVE);
+
+  private final TableVersions tableVersions;
+  private final ChangeSequence changeSequence;
+  private final boolean recordDeletes;
+  private final ThreadLocal<Boolean> entityDelete = new ThreadLocal<>();
+  private final List<BulkWriteListener> bulkWriteListeners = new CopyOnWriteArrayList<>();
+
+
+  public TableWriteInspector(TableVersions tableVersions, ChangeSequence changeSequence,
+                             @Value("${querydsl.changes.record-deletes:true}") boolean recordDeletes) {
+    this.tableVersions = tableVersions;
+    this.changeSequence = changeSequence;
+    this.recordDeletes = recordDeletes;
+  }
+
+
+  @Override
+  public String inspect(String sql) {
+    Matcher matcher = WRITE.matcher(sql);
+    if (!matcher.find())
+      return sql;
+    if (recordDeletes && MEMBER_DELETE.matcher(sql).find()) {
+      if (entityDelete.get() == null)
+        throw new IllegalStateException("bulk delete of member leaves no tombstone, remove entities instead: " + sql);
+      entityDelete.remove();
+    }
+    written(matcher.group(1));
+    if (INSERT_SELECT.matcher(sql).find())
+      bulkWritten(matcher.group(1), null);
+
+    Matcher bulkUpdate = BULK_UPDATE.matcher(sql);
+    if (!bulkUpdate.find())
+      return sql;
+    String setList = setList(bulkUpdate.group(3));
+    boolean memberUpdate = bulkUpdate.group(2).equalsIgnoreCase("member");
+    if (memberUpdate && SETS_USERNAME.matcher(setList).find() && !SETS_USERNAME_NORMALIZED.matcher(setList).find())
+      throw new IllegalStateException("bulk update of member username must also set username_normalized"
+                                      + " (Usernames.normalize): " + sql);
+    // SET 목록에 change_seq 가 있으면 엔티티 update 다. 엔티티 쓰기는 이벤트 리스너가 따로 처리한다.
+    if (SETS_CHANGE_SEQ.matcher(setList).find())
+      return sql;
+    long seq = changeSequence.next();
+    StringBuilder assignments = new StringBuilder("change_seq = " + seq + ", ");
+    if (memberUpdate && !SETS_LAST_ACTIVE_AT.matcher(setList).find())
+      assignments.append("last_active_at = localtimestamp, ");
+    bulkWritten(bulkUpdate.group(2), seq);
+    return bulkUpdate.group(1) + assignments + bulkUpdate.group(3);
+  }
+
+
+  // 엔티티 이벤트가 없는 member/team 벌크 쓰기를 받을 곳. 읽기 모델처럼 이벤트로 유지되는 데이터를 맞추는 데 쓴다.
+  public void addBulkWriteListener(BulkWriteListener listener) {
+    bulkWriteListeners.add(listener);
+  }
+
+
+  // ChangeFeedRecorder 가 엔티티 삭제 직전/직후에 호출한다. 그 사이의 member delete 만 허용한다.
+  public void beginEntityDelete() {
+    entityDelete.set(Boolean.TRUE);
+  }
+
+
+  public void endEntityDelete() {
+    entityDelete.remove();
+  }
+
+
+  // 현재 트랜잭션이 tables 중 하나에 쓴 적이 있는지. 커밋 전 데이터를 다른 스레드와 공유하는 캐시에 넣지 않는 데 쓴다.
+  @SuppressWarnings("unchecked")
+  public boolean writtenInCurrentTransaction(String... tables) {
+    Set<String> written = (Set<String>) TransactionSynchronizationManager.getResource(this);
+    if (written == null)
+      return false;
+    for (String table : tables)
+      if (written.contains(table.toLowerCase(Locale.ROOT)))
+        return true;
+    return false;
+  }
+
+
+  // SET 다음부터 괄호, 문자열 밖의 첫 where 전까지. where 절이나 서브쿼리에 나온 change_seq 는 보지 않는다.
+  private static String setList(String rest) {
+    int depth = 0;
+    boolean quoted = false;
+    for (int i = 0; i < rest.length(); i++) {
+      char c = rest.charAt(i);
+      if (c == '\'')
+        quoted = !quoted;
+      else if (quoted)
+        continue;
+      else if (c == '(')
+        depth++;
+      else if (c == ')')
+        depth--;
+      else if (depth == 0 && WHERE.matcher(rest).region(i, rest.length()).useTransparentBounds(true).lookingAt())
+        return rest.substring(0, i);
+    }
+    return rest;
+  }
+
+
+  // 아직 flush 하지 않은 변경까지 본다. 조회가 자동 flush 로 먼저 쓰게 되는 경우도 캐시에 넣지 않는다.
+  public boolean writesInCurrentTransaction(EntityManager em, String... tables) {
+    if (!TransactionSynchronizationManager.isActualTransactionActive())
+      return false;
+    return writtenInCurrentTransaction(tables)
+           || (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() && em.unwrap(Session.class).isDirty());
+  }
+
+
+  private void bulkWritten(String table, Long changeSeq) {
+    String lowerTable = table.toLowerCase(Locale.ROOT);
+    for (BulkWriteListener listener : bulkWriteListeners)
+      listener.bulkWritten(lowerTable, changeSeq);
+  }
+
+
+  private void written(String table) {
+    tableVersions.bump(table);
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+      writtenTables().add(table.toLowerCase(Locale.ROOT));
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private Set<String> writtenTables() {
+    Set<String> tables = (Set<String>) TransactionSynchronizationManager.getResource(this);
+    if (tables == null) {
+      Set<String> newTables = new HashSet<>();
+      TransactionSynchronizationManager.bindResource(this, newTables);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(TableWriteInspector.this);
+          newTables.forEach(tableVersions::bump);
+        }
+      });
+      tables = newTables;
+    }
+    return tables;
+  }
+
+
+  // 문장이 실행되기 전에 호출되므로 여기서 DB 에 쓰지 말고 트랜잭션에 할 일을 남겨야 한다.
+  // changeSeq 는 이 문장이 바꾼 행에 붙인 순번이다. insert ... select 처럼 순번을 붙이지 않은 쓰기면 null.
+  public interface BulkWriteListener {
+
+    void bulkWritten(String table, Long changeSeq);
+
+  }
+
+}
@@ -0,0 +1,24 @@
+package study.querydsl.support;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+
+public final class Usernames {
+
+  private Usernames() {
+  }
+
+
+  // 대소문자 무시 비교용. NFKC 로 호환 문자(전각, 합자 등)를 합치고 ROOT 로케일로 대/소문자를 접는다.
+  // 대문자를 거쳐 소문자로 내리므로 ß 와 SS 가 같아지고, 서버 기본 로케일(터키어 i 등)의 영향을 받지 않는다.
+  public static String normalize(String username) {
+    if (username == null)
+      return null;
+    String folded = Normalizer.normalize(username, Normalizer.Form.NFKC)
+                              .toUpperCase(Locale.ROOT)
+                              .toLowerCase(Locale.ROOT);
+    return Normalizer.normalize(folded, Normalizer.Form.NFKC);
+  }
+
+}
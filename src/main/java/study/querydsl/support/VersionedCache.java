@@ -0,0 +1,110 @@
+package study.querydsl.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+// 크기 제한(LRU) + TTL 캐시. 항목은 적재 시점의 버전 토큰과 함께 저장되고 토큰이 바뀌면 무효가 된다.
+public class VersionedCache<K, V> {
+
+  private final long ttlNanos;
+  private final Supplier<String> version;
+  private final Map<K, Entry<V>> entries;
+
+
+  public VersionedCache(int maxSize, long ttlMillis, Supplier<String> version) {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    this.ttlNanos = ttlMillis * 1_000_000L;
+    this.version = version;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+
+  // 버전은 로딩 전에 읽는다. 로딩 중 쓰기가 있으면 저장된 항목은 바로 무효가 된다.
+  public V get(K key, Function<? super K, ? extends V> loader) {
+    String currentVersion = version();
+    V value = getIfPresent(key, currentVersion);
+    if (value == null) {
+      value = loader.apply(key);
+      put(key, value, currentVersion);
+    }
+    return value;
+  }
+
+
+  public V getIfPresent(K key) {
+    return getIfPresent(key, version());
+  }
+
+
+  public void put(K key, V value, String loadedVersion) {
+    if (value == null)
+      return;
+    synchronized (entries) {
+      entries.put(key, new Entry<>(value, loadedVersion, System.nanoTime()));
+    }
+  }
+
+
+  public void invalidate(K key) {
+    synchronized (entries) {
+      entries.remove(key);
+    }
+  }
+
+
+  public void invalidateAll() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+
+  public String version() {
+    return version.get();
+  }
+
+
+  private V getIfPresent(K key, String currentVersion) {
+    synchronized (entries) {
+      Entry<V> entry = entries.get(key);
+      if (entry == null)
+        return null;
+      if (!entry.version.equals(currentVersion) || expired(entry)) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.value;
+    }
+  }
+
+
+  private boolean expired(Entry<V> entry) {
+    return ttlNanos > 0 && System.nanoTime() - entry.loadedAt > ttlNanos;
+  }
+
+
+  private static class Entry<V> {
+
+    private final V value;
+    private final String version;
+    private final long loadedAt;
+
+
+    Entry(V value, String version, long loadedAt) {
+      this.value = value;
+      this.version = version;
+      this.loadedAt = loadedAt;
+    }
+
+  }
+
+}
@@ -0,0 +1,34 @@
+package study.querydsl.support;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+// 소스 레벨이 11 이므로 JDK 21+ 런타임에서만 리플렉션으로 가상 스레드 executor 를 만든다.
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+
+  public static boolean isSupported() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+
+  public static Optional<ExecutorService> newPerTaskExecutor() {
+    try {
+      return Optional.of((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                          .invoke(null));
+    } catch (ReflectiveOperationException e) {
+      return Optional.empty();
+    }
+  }
+
+}
@@ -0,0 +1,2 @@
+-- ChangeSequence 가 쓰는 변경 순번 시퀀스. ddl-auto 로 테이블을 다시 만들어도 이어서 증가한다.
+create sequence if not exists change_sequence start with 1
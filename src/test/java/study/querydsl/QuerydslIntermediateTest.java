@@ -19,12 +19,14 @@ import study.querydsl.dto.UserDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.support.Usernames;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static study.querydsl.entity.QMember.member;
 
 
@@ -206,8 +208,16 @@ public class QuerydslIntermediateTest {
 
   @Test
   void bulkUpdate() {
+    // username_normalized 를 함께 바꾸지 않으면 대소문자 무시 검색이 어긋나므로 거부된다.
+    assertThatThrownBy(() -> factory.update(member)
+                                    .set(member.username, "비회원")
+                                    .where(member.age.lt(28))
+                                    .execute())
+        .isInstanceOf(IllegalStateException.class);
+
     factory.update(member)
            .set(member.username, "비회원")
+           .set(member.usernameNormalized, Usernames.normalize("비회원"))
            .where(member.age.lt(28))
            .execute();
 
@@ -235,11 +245,18 @@ public class QuerydslIntermediateTest {
   }
 
 
+  // member 벌크 delete 는 변경 피드에 tombstone 을 남기지 못해 거부된다. 엔티티로 지운다.
   @Test
   void bulkDelete() {
-    factory.delete(member)
+    assertThatThrownBy(() -> factory.delete(member)
+                                    .where(member.age.gt(18))
+                                    .execute())
+        .isInstanceOf(IllegalStateException.class);
+
+    factory.selectFrom(member)
            .where(member.age.gt(18))
-           .execute();
+           .fetch()
+           .forEach(em::remove);
 
     em.flush();
     em.clear();
@@ -0,0 +1,60 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import study.querydsl.repository.MemberRepository;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+@SpringBootTest(properties = {"querydsl.internal-stats.enabled=true", "querydsl.internal-stats.reset-enabled=true",
+                              "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureMockMvc
+class InternalStatsControllerTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  @Test
+  void hibernateStatsAndReset() throws Exception {
+    memberRepository.count();
+
+    mockMvc.perform(get("/internal/stats/hibernate"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.enabled").value(true))
+           .andExpect(jsonPath("$.startTime").exists())
+           .andExpect(jsonPath("$.global.prepareStatementCount", greaterThan(0)))
+           .andExpect(jsonPath("$.global.queryPlanCacheHitRatio").exists())
+           .andExpect(jsonPath("$.entities.Member.loadCount").exists())
+           .andExpect(jsonPath("$.entities.Team.cacheHitRatio").exists())
+           .andExpect(jsonPath("$.collections['study.querydsl.entity.Team.members'].fetchCount").exists())
+           .andExpect(jsonPath("$.queries").isMap());
+
+    // 초기화는 직전 값을 돌려주고 카운터를 비운다.
+    mockMvc.perform(delete("/internal/stats/hibernate"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.global.prepareStatementCount", greaterThan(0)));
+    mockMvc.perform(get("/internal/stats/hibernate"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.global.prepareStatementCount").value(0));
+  }
+
+
+  @Test
+  void searchCoalescingStats() throws Exception {
+    mockMvc.perform(get("/internal/stats/search-coalescing"))
+           .andExpect(status().isOk());
+  }
+
+}
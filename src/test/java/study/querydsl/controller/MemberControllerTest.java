@@ -0,0 +1,99 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+
+  @BeforeEach
+  void before() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    em.persist(new Member("member1", 10, teamA));
+    em.persist(new Member("member2", 20, teamA));
+    em.persist(new Member("member3", 30, teamB));
+    em.persist(new Member("member4", 40, teamB));
+    em.flush();
+  }
+
+
+  @Test
+  void searchByBoundPredicate() throws Exception {
+    mockMvc.perform(get("/v5/members").param("team.name", "teamB").param("age", "35", "40"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.content[*].username", contains("member4")));
+
+    mockMvc.perform(get("/v5/members").param("username", "member1", "member3").param("sort", "username"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.content[*].username", contains("member1", "member3")));
+
+    mockMvc.perform(get("/v5/members").param("team.name", "teamA").param("age", "20"))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.content[*].username", contains("member2")));
+  }
+
+
+  @Test
+  void rejectsUnboundedPredicate() throws Exception {
+    mockMvc.perform(get("/v5/members").param("team.name", "teamA").param("age", "10", "20", "30"))
+           .andExpect(status().isBadRequest())
+           .andExpect(content().string(containsString("age")));
+
+    mockMvc.perform(get("/v5/members").param("age", "10", "20"))
+           .andExpect(status().isBadRequest());
+
+    // 바인딩 대상이 아닌 경로는 무시되므로 선택도 있는 조건이 없는 것과 같다.
+    mockMvc.perform(get("/v5/members").param("team.id", "1"))
+           .andExpect(status().isBadRequest());
+  }
+
+
+  // 보관 데이터를 내보내지 못하므로 무시하지 않고 응답을 쓰기 전에 거부한다.
+  @Test
+  void exportRejectsIncludeArchived() throws Exception {
+    mockMvc.perform(get("/v1/members/export").param("includeArchived", "true"))
+           .andExpect(status().isBadRequest())
+           .andExpect(content().string(containsString("includeArchived")));
+  }
+
+
+  // 내부 지표와 초기화는 설정으로 켜기 전에는 노출되지 않는다.
+  @Test
+  void internalStatsDisabledByDefault() throws Exception {
+    mockMvc.perform(get("/internal/stats/hibernate"))
+           .andExpect(status().isNotFound());
+    mockMvc.perform(delete("/internal/stats/hibernate"))
+           .andExpect(status().isNotFound());
+  }
+
+}
@@ -1,5 +1,6 @@
 package study.querydsl.entity;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -9,6 +10,8 @@ import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 
 @SpringBootTest
 @Transactional
@@ -46,4 +49,32 @@ class MemberTest {
     });
   }
 
-}
\ No newline at end of file
+
+
+  @Test
+  void changeTeamWithoutInitializingMembers() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    em.persist(new Member("member1", 10, teamA));
+    Member member2 = new Member("member2", 20, teamB);
+    em.persist(member2);
+
+    em.flush();
+    em.clear();
+
+    Team findTeamA = em.find(Team.class, teamA.getId());
+    Member findMember2 = em.find(Member.class, member2.getId());
+    findMember2.changeTeam(findTeamA);
+    assertThat(Hibernate.isInitialized(findTeamA.getMembers())).isFalse();
+
+    em.flush();
+    em.clear();
+
+    assertThat(em.find(Team.class, teamA.getId()).getMembers())
+        .extracting("username")
+        .containsExactlyInAnyOrder("member1", "member2");
+  }
+
+}
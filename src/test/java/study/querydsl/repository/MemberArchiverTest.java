@@ -0,0 +1,98 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+
+// 배치마다 커밋하므로 별도 DB 에서 검증한다.
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:archive;DB_CLOSE_DELAY=-1",
+                              "querydsl.archive.enabled=true",
+                              "querydsl.archive.batch-size=2"})
+class MemberArchiverTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberArchiver memberArchiver;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+  @Autowired
+  private MemberJdbcRepository memberJdbcRepository;
+
+
+  @Test
+  void archiveInactiveMembers() {
+    transactionTemplate.executeWithoutResult(status -> {
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      for (int i = 0; i < 5; ++i) {
+        Member member = new Member("member" + i, i * 10, teamA);
+        if (i < 3)
+          member.setLastActiveAt(LocalDateTime.now().minusDays(365));
+        em.persist(member);
+      }
+    });
+
+    assertThat(memberArchiver.archive(LocalDateTime.now().minusDays(180))).isEqualTo(3);
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamA");
+    assertThat(memberRepository.search(condition)).extracting("username").containsExactlyInAnyOrder("member3", "member4");
+    assertThat(memberJdbcRepository.search(condition)).hasSize(2);
+
+    condition.setIncludeArchived(true);
+    condition.setAgeGoe(10);
+    assertThat(memberJdbcRepository.searchPage(condition, PageRequest.of(0, 3, Sort.by(Sort.Order.desc("age")))))
+        .extracting("username", "teamName")
+        .containsExactly(tuple("member4", "teamA"),
+                         tuple("member3", "teamA"),
+                         tuple("member2", "teamA"));
+    assertThat(memberJdbcRepository.count(condition)).isEqualTo(4);
+
+    assertThat(memberArchiver.archive(LocalDateTime.now().minusDays(180))).isZero();
+  }
+
+
+  // 오래전에 만들어졌어도 최근에 바뀐 member 는 옮기지 않는다.
+  @Test
+  void keepRecentlyUpdatedMembers() {
+    Long[] ids = transactionTemplate.execute(status -> {
+      Team teamB = new Team("teamB");
+      em.persist(teamB);
+      Member touched = new Member("touched", 10, teamB);
+      Member idle = new Member("idle", 20, teamB);
+      touched.setLastActiveAt(LocalDateTime.now().minusDays(365));
+      idle.setLastActiveAt(LocalDateTime.now().minusDays(365));
+      em.persist(touched);
+      em.persist(idle);
+      return new Long[] {touched.getId(), idle.getId()};
+    });
+    transactionTemplate.executeWithoutResult(status -> em.find(Member.class, ids[0]).setAge(11));
+
+    assertThat(memberArchiver.archive(LocalDateTime.now().minusDays(180))).isEqualTo(1);
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamB");
+    assertThat(memberRepository.search(condition)).extracting("username").containsExactly("touched");
+  }
+
+}
@@ -0,0 +1,135 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.InvalidSearchException;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+// 그룹으로 묶이지 않는 조건은 다른 스레드에서 실행되므로 커밋된 데이터가 있는 별도 DB 에서 검증한다.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:batchsearch;DB_CLOSE_DELAY=-1")
+class MemberBatchSearcherTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberBatchSearcher memberBatchSearcher;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  @BeforeEach
+  void before() {
+    transactionTemplate.executeWithoutResult(status -> {
+      if (memberRepository.count() > 0)
+        return;
+      Team teamA = new Team("teamA");
+      Team teamB = new Team("teamB");
+      em.persist(teamA);
+      em.persist(teamB);
+      for (int i = 0; i < 10; ++i)
+        em.persist(new Member("member" + i, i * 10, (i & 1) == 0? teamA: teamB));
+    });
+  }
+
+
+  @Test
+  void matchesSingleSearches() {
+    List<MemberSearchCondition> conditions = new ArrayList<>();
+    conditions.add(condition("member1", null, null));
+    conditions.add(condition(null, "teamA", null));
+    conditions.add(condition("MEMBER2", null, null));
+    conditions.get(2).setIgnoreCase(true);
+    conditions.add(condition(null, "teamB", 50));
+    conditions.add(condition("member1", null, null));
+    conditions.add(condition("unknown", null, null));
+
+    Map<Integer, List<MemberTeamDto>> results = memberBatchSearcher.search(conditions);
+    assertThat(results).containsOnlyKeys(0, 1, 2, 3, 4, 5);
+    for (int i = 0; i < conditions.size(); ++i)
+      assertThat(results.get(i)).as(conditions.get(i).toString())
+                                .containsExactlyInAnyOrderElementsOf(memberRepository.search(conditions.get(i)));
+    assertThat(results.get(5)).isEmpty();
+
+    assertThatThrownBy(() -> memberBatchSearcher.search(List.of())).isInstanceOf(InvalidSearchException.class);
+  }
+
+
+  // 대소문자 무시 조건은 요청 값을 정규화해 찾고 같은 정규화 값으로 나누므로 입력 표기가 달라도 결과를 돌려준다.
+  @Test
+  void matchesMixedCaseUsernames() {
+    List<MemberSearchCondition> conditions = new ArrayList<>();
+    for (String username : List.of("MeMbEr3", "member3", "ＭＥＭＢＥＲ３")) {
+      MemberSearchCondition condition = condition(username, null, null);
+      condition.setIgnoreCase(true);
+      conditions.add(condition);
+    }
+    conditions.add(condition("MeMbEr3", null, null));
+
+    Map<Integer, List<MemberTeamDto>> results = memberBatchSearcher.search(conditions);
+    for (int i = 0; i < 3; ++i)
+      assertThat(results.get(i)).as(conditions.get(i).toString()).extracting("username").containsExactly("member3");
+    assertThat(results.get(3)).isEmpty();
+  }
+
+
+  // 필터가 없는 조건은 전체 조회가 되므로 다른 조건과 함께 와도 거부한다.
+  @Test
+  void rejectsUnfilteredCondition() {
+    MemberSearchCondition archivedOnly = new MemberSearchCondition();
+    archivedOnly.setIncludeArchived(true);
+    assertThatThrownBy(() -> memberBatchSearcher.search(List.of(condition("member1", null, null),
+                                                                new MemberSearchCondition())))
+        .isInstanceOf(InvalidSearchException.class)
+        .hasMessageContaining("conditions[1]");
+    assertThatThrownBy(() -> memberBatchSearcher.search(List.of(archivedOnly)))
+        .isInstanceOf(InvalidSearchException.class);
+  }
+
+
+  // 그룹 결과는 DB 가 비교한 컬럼 값으로 나눈다. 저장된 정규화 값이 다시 계산한 값과 달라도 찾은 행을 버리지 않는다.
+  @Test
+  void bucketsByMatchedColumn() {
+    transactionTemplate.executeWithoutResult(status -> {
+      Member legacy = new Member("legacy", 99);
+      em.persist(legacy);
+      em.flush();
+      em.createNativeQuery("update member set username_normalized = 'legacy-alias' where member_id = ?")
+        .setParameter(1, legacy.getId())
+        .executeUpdate();
+    });
+
+    MemberSearchCondition condition = condition("legacy-alias", null, null);
+    condition.setIgnoreCase(true);
+    assertThat(memberBatchSearcher.search(List.of(condition)).get(0)).extracting("username").containsExactly("legacy");
+  }
+
+
+  private MemberSearchCondition condition(String username, String teamName, Integer ageGoe) {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsername(username);
+    condition.setTeamName(teamName);
+    condition.setAgeGoe(ageGoe);
+    return condition;
+  }
+
+}
@@ -0,0 +1,67 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberChangesDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.InvalidSearchException;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+
+// 변경 피드는 커밋된 순번만 보이므로 트랜잭션을 실제로 커밋하는 별도 DB 에서 검증한다.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1")
+class MemberChangeRepositoryTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberChangeRepository memberChangeRepository;
+
+
+  @Test
+  void changesSince() {
+    long start = memberChangeRepository.findChanges(0, 1000).getNextSince();
+    Long[] ids = transactionTemplate.execute(status -> {
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      Member member1 = new Member("member1", 10, teamA);
+      Member member2 = new Member("member2", 20, teamA);
+      em.persist(member1);
+      em.persist(member2);
+      return new Long[] {member1.getId(), member2.getId()};
+    });
+
+    MemberChangesDto created = memberChangeRepository.findChanges(start, 100);
+    assertThat(created.getMembers()).extracting("username", "teamName")
+                                    .containsExactly(tuple("member1", "teamA"), tuple("member2", "teamA"));
+    assertThat(created.getTeams()).extracting("name").containsExactly("teamA");
+
+    // 벌크 update 한 번은 같은 순번을 가지므로 limit=1 이어도 나뉘지 않는다.
+    transactionTemplate.executeWithoutResult(status ->
+        em.createQuery("update Member m set m.age = m.age + 1 where m.username in ('member1', 'member2')")
+          .executeUpdate());
+    MemberChangesDto bulk = memberChangeRepository.findChanges(created.getNextSince(), 1);
+    assertThat(bulk.getMembers()).extracting("age").containsExactly(11, 21);
+    assertThat(bulk.getMembers().get(0).getChangeSeq()).isEqualTo(bulk.getMembers().get(1).getChangeSeq());
+    assertThat(memberChangeRepository.findChanges(bulk.getNextSince(), 100).getMembers()).isEmpty();
+
+    transactionTemplate.executeWithoutResult(status -> em.remove(em.find(Member.class, ids[0])));
+    MemberChangesDto deleted = memberChangeRepository.findChanges(bulk.getNextSince(), 100);
+    assertThat(deleted.getMembers()).extracting("memberId", "deleted").containsExactly(tuple(ids[0], true));
+
+    assertThatThrownBy(() -> memberChangeRepository.findChanges(0, 0)).isInstanceOf(InvalidSearchException.class);
+  }
+
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+// prefetch 는 chunk 를 별도 EntityManager 로 읽으므로 커밋된 데이터가 있는 별도 DB 에서 검증한다.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:chunks;DB_CLOSE_DELAY=-1")
+class MemberChunkStreamTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private EntityManagerFactory emf;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberJpaRepository memberJpaRepository;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  @BeforeEach
+  void before() {
+    transactionTemplate.executeWithoutResult(status -> {
+      if (memberRepository.count() > 0)
+        return;
+      Team teamA = new Team("teamA");
+      em.persist(teamA);
+      for (int i = 0; i < 5; ++i)
+        em.persist(new Member("member" + i, i * 10, teamA));
+    });
+  }
+
+
+  @Test
+  void prefetchReturnsSameChunks() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    assertThat(usernames(condition, true)).isEqualTo(usernames(condition, false))
+                                          .containsExactly(List.of("member0", "member1"),
+                                                           List.of("member2", "member3"),
+                                                           List.of("member4"));
+
+    condition.setAgeGoe(20);
+    assertThat(usernames(condition, true)).containsExactly(List.of("member2", "member3"), List.of("member4"));
+  }
+
+
+  // open-session-in-view 처럼 트랜잭션 없이 EntityManager 가 묶여 있어도 지난 chunk 는 분리된다.
+  @Test
+  void detachChunksWithoutTransaction() {
+    EntityManager viewEm = emf.createEntityManager();
+    TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(viewEm));
+    try {
+      List<List<Member>> chunks = new ArrayList<>();
+      memberJpaRepository.forEachChunk(new MemberSearchCondition(), 2, chunks::add);
+
+      assertThat(chunks).hasSize(3);
+      assertThat(chunks.get(0)).noneMatch(viewEm::contains);
+      assertThat(chunks.get(1)).noneMatch(viewEm::contains);
+    } finally {
+      TransactionSynchronizationManager.unbindResource(emf);
+      viewEm.close();
+    }
+  }
+
+
+  private List<List<String>> usernames(MemberSearchCondition condition, boolean prefetch) {
+    try (Stream<List<Member>> chunks = memberJpaRepository.streamChunks(condition, 2, prefetch)) {
+      return chunks.map(chunk -> chunk.stream().map(Member::getUsername).collect(Collectors.toList()))
+                   .collect(Collectors.toList());
+    }
+  }
+
+}
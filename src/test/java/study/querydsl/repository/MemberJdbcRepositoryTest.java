@@ -0,0 +1,116 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.ApproximatePage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest
+@Transactional
+class MemberJdbcRepositoryTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+  @Autowired
+  private MemberJdbcRepository memberJdbcRepository;
+
+
+  @BeforeEach
+  void before() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+
+    for (int i = 0; i < 10; ++i)
+      em.persist(new Member("member" + i, i * 10, (i & 1) == 0? teamA: teamB));
+    em.persist(new Member("noTeam", 55));
+    em.flush();
+  }
+
+
+  @Test
+  void searchMatchesJpa() {
+    for (MemberSearchCondition condition : conditions())
+      assertThat(memberJdbcRepository.search(condition))
+          .as(condition.toString())
+          .containsExactlyInAnyOrderElementsOf(memberRepository.search(condition));
+  }
+
+
+  @Test
+  void searchPageMatchesJpa() {
+    List<PageRequest> pageRequests = List.of(PageRequest.of(0, 3),
+                                             PageRequest.of(1, 3, Sort.by(Sort.Order.desc("age"))),
+                                             PageRequest.of(0, 4, Sort.by("teamName", "username")));
+    for (MemberSearchCondition condition : conditions()) {
+      for (PageRequest pageRequest : pageRequests) {
+        Page<MemberTeamDto> jdbc = memberJdbcRepository.searchPage(condition, pageRequest);
+        Page<MemberTeamDto> jpa = memberRepository.searchPageComplex(condition, pageRequest);
+        assertThat(jdbc.getContent()).as(condition + " " + pageRequest).isEqualTo(jpa.getContent());
+        assertThat(jdbc.getTotalElements()).as(condition + " " + pageRequest).isEqualTo(jpa.getTotalElements());
+
+        Page<MemberTeamDto> approximate = memberJdbcRepository.searchPage(condition, pageRequest, false);
+        assertThat(approximate).isInstanceOf(ApproximatePage.class);
+        assertThat(approximate.getContent()).isEqualTo(jpa.getContent());
+        assertThat(approximate.getTotalElements()).isEqualTo(jpa.getTotalElements());
+      }
+    }
+  }
+
+
+  private List<MemberSearchCondition> conditions() {
+    List<MemberSearchCondition> conditions = new ArrayList<>();
+    conditions.add(new MemberSearchCondition());
+
+    MemberSearchCondition username = new MemberSearchCondition();
+    username.setUsername("member3");
+    conditions.add(username);
+
+    MemberSearchCondition ignoreCase = new MemberSearchCondition();
+    ignoreCase.setUsername("MEMBER3");
+    ignoreCase.setIgnoreCase(true);
+    conditions.add(ignoreCase);
+
+    MemberSearchCondition teamName = new MemberSearchCondition();
+    teamName.setTeamName("teamB");
+    conditions.add(teamName);
+
+    MemberSearchCondition ageRange = new MemberSearchCondition();
+    ageRange.setAgeGoe(20);
+    ageRange.setAgeLoe(60);
+    conditions.add(ageRange);
+
+    MemberSearchCondition all = new MemberSearchCondition();
+    all.setTeamName("teamA");
+    all.setAgeGoe(20);
+    all.setAgeLoe(80);
+    conditions.add(all);
+
+    MemberSearchCondition none = new MemberSearchCondition();
+    none.setTeamName("teamC");
+    conditions.add(none);
+    return conditions;
+  }
+
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -7,13 +8,18 @@ import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.InvalidSearchException;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 @SpringBootTest
@@ -59,6 +65,117 @@ class MemberJpaRepositoryTest {
   }
 
 
+  @Test
+  @org.springframework.transaction.annotation.Transactional(readOnly = true)
+  void readOnlyTest() {
+    memberJpaRepository.save(new Member("member1"));
+    em.flush();
+    em.clear();
+
+    Session session = em.unwrap(Session.class);
+    List<Member> result = memberJpaRepository.findAll();
+    assertThat(result).hasSize(1)
+                      .allMatch(session::isReadOnly);
+  }
+
+
+  @Test
+  void readWriteCallerTest() {
+    memberJpaRepository.save(new Member("member1"));
+    em.flush();
+    em.clear();
+
+    Session session = em.unwrap(Session.class);
+    List<Member> result = memberJpaRepository.findAll();
+    assertThat(result).hasSize(1)
+                      .noneMatch(session::isReadOnly);
+
+    result.get(0).setUsername("changed");
+    em.flush();
+    em.clear();
+    assertThat(memberJpaRepository.findByUsername("changed")).hasSize(1);
+  }
+
+
+  @Test
+  void findAllStatelessTest() {
+    memberJpaRepository.save(new Member("member1"));
+    memberJpaRepository.save(new Member("member2"));
+    em.flush();
+
+    List<Member> result = memberJpaRepository.findAllStateless();
+    assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+    assertThat(result).noneMatch(em::contains);
+  }
+
+
+  @Test
+  void forEachChunkTest() {
+    for (int i = 0; i < 5; ++i)
+      memberJpaRepository.save(new Member("member" + i, i));
+
+    List<String> usernames = new ArrayList<>();
+    List<Integer> sizes = new ArrayList<>();
+    memberJpaRepository.forEachChunk(new MemberSearchCondition(), 2, chunk -> {
+      sizes.add(chunk.size());
+      chunk.forEach(m -> usernames.add(m.getUsername()));
+    });
+
+    assertThat(sizes).containsExactly(2, 2, 1);
+    assertThat(usernames).containsExactly("member0", "member1", "member2", "member3", "member4");
+  }
+
+
+  @Test
+  void forEachChunkKeepsCallerEntitiesTest() {
+    Member callerMember = new Member("caller", 0);
+    memberJpaRepository.save(callerMember);
+    for (int i = 1; i < 5; ++i)
+      memberJpaRepository.save(new Member("member" + i, i));
+
+    List<Member> visited = new ArrayList<>();
+    memberJpaRepository.forEachChunk(new MemberSearchCondition(), 2, visited::addAll);
+
+    assertThat(visited).hasSize(5);
+    assertThat(em.contains(callerMember)).isTrue();
+    assertThat(visited.subList(1, 4)).noneMatch(em::contains);
+  }
+
+
+  @Test
+  void findAllByIdTest() {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    Member member1 = new Member("member1", 10, teamA);
+    Member member2 = new Member("member2", 20);
+    em.persist(member1);
+    em.persist(member2);
+
+    List<MemberTeamDto> result = memberJpaRepository.findAllById(List.of(member2.getId(), -1L, member1.getId(),
+                                                                          member2.getId()));
+    assertThat(result).extracting("username").containsExactly("member2", "member1", "member2");
+    assertThat(result).extracting("teamName").containsExactly(null, "teamA", null);
+
+    result.get(1).setUsername("changed");
+    assertThat(memberJpaRepository.findAllById(List.of(member1.getId())))
+        .extracting("username")
+        .containsExactly("member1");
+  }
+
+
+  // 쓰기 트랜잭션에서 읽은 미커밋 행은 다른 스레드가 쓰는 캐시에 남지 않는다.
+  @Test
+  void findAllByIdDoesNotShareUncommittedRowsTest() throws Exception {
+    Member member1 = new Member("member1", 10);
+    em.persist(member1);
+    assertThat(memberJpaRepository.findAllById(List.of(member1.getId()))).hasSize(1);
+
+    List<MemberTeamDto> otherThread = CompletableFuture.supplyAsync(
+        () -> memberJpaRepository.findAllById(List.of(member1.getId()))).get(5, TimeUnit.SECONDS);
+    assertThat(otherThread).isEmpty();
+  }
+
+
   @Test
   void searchByBuilderTest() {
     Team teamA = new Team("teamA");
@@ -106,6 +223,15 @@ class MemberJpaRepositoryTest {
     condition.setTeamName("teamB");
     List<MemberTeamDto> result = memberJpaRepository.search(condition);
     assertThat(result).extracting("username").containsExactly("member4");
+
+    condition.setTeamName("teamC");
+    assertThat(memberJpaRepository.search(condition)).isEmpty();
+
+    condition.setIncludeArchived(true);
+    assertThatThrownBy(() -> memberJpaRepository.search(condition)).isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberJpaRepository.searchByBuilder(condition)).isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberJpaRepository.forEachRow(condition, row -> {}))
+        .isInstanceOf(InvalidSearchException.class);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+// near cache 는 커밋된 행만 담으므로 커밋된 데이터가 있는 별도 DB 에서 검증한다.
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:near-cache;DB_CLOSE_DELAY=-1")
+class MemberNearCacheTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberJpaRepository memberJpaRepository;
+
+
+  // 캐시에 올라간 member 를 같은 트랜잭션에서 바꾸면 다음 findAllById 는 캐시가 아니라 바뀐 값을 읽는다.
+  @Test
+  void findAllByIdReadsOwnWrites() {
+    Long id = transactionTemplate.execute(status -> {
+      Member member = new Member("nearCache1", 10);
+      em.persist(member);
+      return member.getId();
+    });
+
+    transactionTemplate.executeWithoutResult(status -> {
+      assertThat(memberJpaRepository.findAllById(List.of(id))).extracting("age").containsExactly(10);
+
+      em.find(Member.class, id).setAge(20);
+      assertThat(memberJpaRepository.findAllById(List.of(id))).extracting("age").containsExactly(20);
+      status.setRollbackOnly();
+    });
+
+    assertThat(memberJpaRepository.findAllById(List.of(id))).extracting("age").containsExactly(10);
+  }
+
+}
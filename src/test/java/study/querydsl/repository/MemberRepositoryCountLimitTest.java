@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.ApproximatePage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest(properties = "querydsl.search.count-limit=2")
+@Transactional
+class MemberRepositoryCountLimitTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  @Test
+  void searchPageCountLimitTest() {
+    for (int i = 0; i < 4; ++i)
+      em.persist(new Member("member" + i, i * 10));
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(10);
+    ApproximatePage<MemberTeamDto> over =
+        (ApproximatePage<MemberTeamDto>) memberRepository.searchPageComplex(condition, PageRequest.of(0, 1), false);
+    assertThat(over.isApproximate()).isTrue();
+    assertThat(over.getTotalElements()).isEqualTo(2);
+
+    condition.setAgeGoe(20);
+    ApproximatePage<MemberTeamDto> exact =
+        (ApproximatePage<MemberTeamDto>) memberRepository.searchPageComplex(condition, PageRequest.of(0, 1), false);
+    assertThat(exact.isApproximate()).isFalse();
+    assertThat(exact.getTotalElements()).isEqualTo(2);
+  }
+
+
+  // member 에 쓴 트랜잭션의 전체 건수는 캐시에 남지 않아 다른 스레드에는 미커밋 행이 세어지지 않는다.
+  @Test
+  void tableSizeBypassesCacheInWritingTransaction() throws Exception {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    PageRequest pageable = PageRequest.of(1, 1);
+    long before = CompletableFuture.supplyAsync(() -> memberRepository.searchPageComplex(condition, pageable, false))
+                                   .get(5, TimeUnit.SECONDS)
+                                   .getTotalElements();
+
+    for (int i = 0; i < 4; ++i)
+      em.persist(new Member("sizeMember" + i, i * 10));
+    assertThat(memberRepository.searchPageComplex(condition, pageable, false).getTotalElements())
+        .isEqualTo(before + 4);
+
+    long otherThread = CompletableFuture.supplyAsync(() -> memberRepository.searchPageComplex(condition, pageable, false))
+                                        .get(5, TimeUnit.SECONDS)
+                                        .getTotalElements();
+    assertThat(otherThread).isEqualTo(before);
+  }
+
+}
@@ -0,0 +1,53 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest(properties = "querydsl.search.deferred-join-offset=2")
+@Transactional
+class MemberRepositoryDeferredJoinTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  @Test
+  void searchPageDeferredTest() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    for (int i = 0; i < 6; ++i)
+      em.persist(new Member("member" + i, i * 10, (i & 1) == 0? teamA: teamB));
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    PageRequest pageRequest = PageRequest.of(1, 2);
+
+    Page<MemberTeamDto> resultsSimple = memberRepository.searchPageSimple(condition, pageRequest);
+    assertThat(resultsSimple.getTotalElements()).isEqualTo(6);
+    assertThat(resultsSimple).extracting("username").containsExactly("member2", "member3");
+    assertThat(resultsSimple).extracting("teamName").containsExactly("teamA", "teamB");
+
+    condition.setTeamName("teamB");
+    Page<MemberTeamDto> resultsComplex = memberRepository.searchPageComplex(condition, pageRequest);
+    assertThat(resultsComplex.getTotalElements()).isEqualTo(3);
+    assertThat(resultsComplex).extracting("username").containsExactly("member5");
+  }
+
+}
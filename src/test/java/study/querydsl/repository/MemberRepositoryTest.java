@@ -5,16 +5,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.ApproximatePage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.support.InvalidSearchException;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static study.querydsl.entity.QMember.member;
 
 
@@ -55,6 +60,48 @@ class MemberRepositoryTest {
     condition.setTeamName("teamB");
     List<MemberTeamDto> result = memberRepository.search(condition);
     assertThat(result).extracting("username").containsExactly("member4");
+    assertThat(result).extracting("teamName").containsExactly("teamB");
+  }
+
+
+  @Test
+  void searchIgnoreCaseTest() {
+    readyData();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsername("ＭＥＭＢＥＲ1");
+    assertThat(memberRepository.search(condition)).isEmpty();
+
+    condition.setIgnoreCase(true);
+    assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+    condition.setTeamName("teamA");
+    assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 3)))
+        .extracting("username")
+        .containsExactly("member1");
+  }
+
+
+  @Test
+  void searchUnknownTeamTest() {
+    readyData();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamC");
+    assertThat(memberRepository.search(condition)).isEmpty();
+    assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 3)).getTotalElements()).isZero();
+  }
+
+
+  // member_archive 는 MemberJdbcRepository 만 읽는다. 나머지는 includeArchived 를 무시하지 않고 거부한다.
+  @Test
+  void searchRejectsIncludeArchivedTest() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setIncludeArchived(true);
+    assertThatThrownBy(() -> memberRepository.search(condition)).isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberRepository.searchPageSimple(condition, PageRequest.of(0, 3)))
+        .isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 3), false))
+        .isInstanceOf(InvalidSearchException.class);
   }
 
 
@@ -78,6 +125,43 @@ class MemberRepositoryTest {
   }
 
 
+  @Test
+  void searchPageSortTest() {
+    readyData();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Order.desc("teamName"), Sort.Order.desc("age")));
+    assertThat(memberRepository.searchPageComplex(condition, pageRequest))
+        .extracting("username")
+        .containsExactly("member4", "member3", "member2");
+
+    condition.setTeamName("teamA");
+    assertThat(memberRepository.searchPageSimple(condition, pageRequest))
+        .extracting("username")
+        .containsExactly("member2", "member1");
+
+    PageRequest unsupported = PageRequest.of(0, 3, Sort.by("teamId"));
+    assertThatThrownBy(() -> memberRepository.searchPageComplex(condition, unsupported))
+        .isInstanceOf(InvalidSearchException.class);
+  }
+
+
+  @Test
+  void searchPageApproximateTest() {
+    readyData();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(20);
+    Page<MemberTeamDto> result = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2), false);
+    assertThat(result).isInstanceOf(ApproximatePage.class);
+    assertThat(((ApproximatePage<MemberTeamDto>) result).isApproximate()).isFalse();
+    assertThat(result.getTotalElements()).isEqualTo(3);
+
+    Page<MemberTeamDto> all = memberRepository.searchPageComplex(new MemberSearchCondition(), PageRequest.of(0, 2), false);
+    assertThat(all.getTotalElements()).isEqualTo(4);
+  }
+
+
   @Test
   void querydslPredicateExecutorTest() {
     readyData();
@@ -87,6 +171,28 @@ class MemberRepositoryTest {
   }
 
 
+  @Test
+  void searchByPredicateTest() {
+    readyData();
+
+    PageRequest pageRequest = PageRequest.of(0, 10, Sort.by("age"));
+    assertThat(memberRepository.searchByPredicate(member.team.name.eq("teamB").and(member.age.between(35, 40)),
+                                                  pageRequest))
+        .extracting("username", "teamName")
+        .containsExactly(tuple("member4", "teamB"));
+    assertThat(memberRepository.searchByPredicate(member.username.in("member1", "member3"), pageRequest))
+        .extracting("username")
+        .containsExactly("member1", "member3");
+
+    assertThatThrownBy(() -> memberRepository.searchByPredicate(member.age.between(10, 40), pageRequest))
+        .isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberRepository.searchByPredicate(member.username.like("member%"), pageRequest))
+        .isInstanceOf(InvalidSearchException.class);
+    assertThatThrownBy(() -> memberRepository.searchByPredicate(member.username.eq("member1"), PageRequest.of(0, 1000)))
+        .isInstanceOf(InvalidSearchException.class);
+  }
+
+
   private void readyData() {
     Team teamA = new Team("teamA");
     Team teamB = new Team("teamB");
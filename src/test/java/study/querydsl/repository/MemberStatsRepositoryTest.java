@@ -0,0 +1,87 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.AgeHistogramDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.InvalidSearchException;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+
+@SpringBootTest
+@Transactional
+class MemberStatsRepositoryTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MemberStatsRepository memberStatsRepository;
+
+
+  @BeforeEach
+  void before() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+
+    em.persist(new Member("member1", 10, teamA));
+    em.persist(new Member("member2", 20, teamA));
+    em.persist(new Member("member3", 30, teamB));
+    em.persist(new Member("member4", 40, teamB));
+    em.flush();
+  }
+
+
+  // 쓰기 트랜잭션에서 센 미커밋 건수는 다른 스레드가 쓰는 캐시에 남지 않는다.
+  @Test
+  void ageHistogramDoesNotShareUncommittedCounts() throws Exception {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    long total = memberStatsRepository.ageHistogram(condition, List.of(20, 35)).getTotal();
+
+    AgeHistogramDto otherThread = CompletableFuture.supplyAsync(
+        () -> memberStatsRepository.ageHistogram(condition, List.of(20, 35))).get(5, TimeUnit.SECONDS);
+    assertThat(otherThread.getTotal()).isEqualTo(total - 4);
+  }
+
+
+  @Test
+  void ageHistogram() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    AgeHistogramDto all = memberStatsRepository.ageHistogram(condition, List.of(20, 35));
+    assertThat(all.getBuckets()).extracting("from", "to", "count")
+                                .containsExactly(tuple(null, 20, 1L), tuple(20, 35, 2L), tuple(35, null, 1L));
+    assertThat(all.getTotal()).isEqualTo(4);
+
+    condition.setAgeLoe(30);
+    assertThat(memberStatsRepository.ageHistogram(condition, List.of(20, 35)).getBuckets())
+        .extracting("count")
+        .containsExactly(1L, 2L, 0L);
+
+    condition.setTeamName("teamB");
+    assertThat(memberStatsRepository.ageHistogram(condition, List.of(20, 35)).getBuckets())
+        .extracting("count")
+        .containsExactly(0L, 1L, 0L);
+
+    condition.setTeamName("teamC");
+    assertThat(memberStatsRepository.ageHistogram(condition, List.of(20, 35)).getTotal()).isZero();
+
+    assertThatThrownBy(() -> memberStatsRepository.ageHistogram(new MemberSearchCondition(), List.of(30, 20)))
+        .isInstanceOf(InvalidSearchException.class);
+  }
+
+}
@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QTeam.team;
+
+
+@SpringBootTest(properties = "querydsl.read-model.enabled=true")
+@Transactional
+class MemberTeamViewMaintainerTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+  @Autowired
+  private MemberTeamViewMaintainer memberTeamViewMaintainer;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+
+  @Test
+  void searchFromReadModel() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+
+    Member member1 = new Member("member1", 10, teamA);
+    em.persist(member1);
+    em.persist(new Member("member2", 20, teamB));
+    em.flush();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamA");
+    List<MemberTeamDto> result = memberRepository.search(condition);
+    assertThat(result).extracting("username").containsExactly("member1");
+
+    teamA.setName("teamC");
+    member1.setAge(11);
+    em.flush();
+
+    condition.setTeamName("teamC");
+    result = memberRepository.search(condition);
+    assertThat(result).extracting("username").containsExactly("member1");
+    assertThat(result).extracting("age").containsExactly(11);
+
+    em.remove(member1);
+    em.flush();
+    assertThat(memberRepository.search(condition)).isEmpty();
+  }
+
+
+  // JPQL/네이티브 벌크 쓰기는 뷰를 읽기 전에 반영된다. TableWriteInspector 를 거치지 않는 JDBC 쓰기는 rebuild() 로 맞춘다.
+  @Test
+  void bulkWriteRefreshesReadModel() {
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    Member member1 = new Member("member1", 10, teamA);
+    em.persist(member1);
+    em.flush();
+
+    em.createNativeQuery("update member set age = 99 where member_id = ?")
+      .setParameter(1, member1.getId())
+      .executeUpdate();
+
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamA");
+    assertThat(memberRepository.search(condition)).extracting("age").containsExactly(99);
+
+    new JPAQueryFactory(em).update(team)
+                           .set(team.name, "teamC")
+                           .where(team.id.eq(teamA.getId()))
+                           .execute();
+    condition.setTeamName("teamC");
+    assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member1");
+
+    jdbcTemplate.update("update member set age = 50 where member_id = ?", member1.getId());
+    assertThat(memberRepository.search(condition)).extracting("age").containsExactly(99);
+
+    memberTeamViewMaintainer.rebuild();
+    assertThat(memberRepository.search(condition)).extracting("age").containsExactly(50);
+  }
+
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.support.TableVersions;
+import study.querydsl.support.TableWriteInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class PagePrefetcherTest {
+
+  @Test
+  void prefetchNextPage() throws Exception {
+    TableVersions tableVersions = new TableVersions();
+    PagePrefetcher pagePrefetcher =
+        new PagePrefetcher(null, tableVersions, new TableWriteInspector(tableVersions, null, true), true, 30000, 10, 1);
+    List<Integer> loaded = new CopyOnWriteArrayList<>();
+    Function<Pageable, Page<Integer>> loader = pageable -> {
+      loaded.add(pageable.getPageNumber());
+      return new PageImpl<>(List.of(pageable.getPageNumber()), pageable, 10);
+    };
+
+    pagePrefetcher.page("q", "c", PageRequest.of(0, 1), loader);
+    waitUntil(() -> loaded.contains(1));
+    Thread.sleep(50);
+
+    Page<Integer> page = pagePrefetcher.page("q", "c", PageRequest.of(1, 1), loader);
+    assertThat(page.getContent()).containsExactly(1);
+    assertThat(loaded.stream().filter(n -> n == 1).count()).isEqualTo(1);
+
+    tableVersions.bump(TableVersions.MEMBER);
+    waitUntil(() -> loaded.contains(2));
+    Thread.sleep(50);
+    pagePrefetcher.page("q", "c", PageRequest.of(2, 1), loader);
+    assertThat(loaded.stream().filter(n -> n == 2).count()).isEqualTo(2);
+
+    pagePrefetcher.destroy();
+  }
+
+
+  // team 에 쓴 트랜잭션에서는 매번 직접 읽고 다음 페이지를 미리 읽지 않는다.
+  @Test
+  void bypassInWritingTransaction() throws Exception {
+    TableVersions tableVersions = new TableVersions();
+    TableWriteInspector tableWriteInspector = new TableWriteInspector(tableVersions, null, true);
+    PagePrefetcher pagePrefetcher = new PagePrefetcher(null, tableVersions, tableWriteInspector, true, 30000, 10, 1);
+    List<Integer> loaded = new CopyOnWriteArrayList<>();
+    Function<Pageable, Page<Integer>> loader = pageable -> {
+      loaded.add(pageable.getPageNumber());
+      return new PageImpl<>(List.of(pageable.getPageNumber()), pageable, 10);
+    };
+
+    TransactionSynchronizationManager.initSynchronization();
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    try {
+      tableWriteInspector.inspect("delete from team where team_id = 1");
+      pagePrefetcher.page("q", "c", PageRequest.of(0, 1), loader);
+      pagePrefetcher.page("q", "c", PageRequest.of(0, 1), loader);
+      Thread.sleep(100);
+      assertThat(loaded).containsExactly(0, 0);
+    } finally {
+      TransactionSynchronizationManager.unbindResourceIfPossible(tableWriteInspector);
+      TransactionSynchronizationManager.setActualTransactionActive(false);
+      TransactionSynchronizationManager.clearSynchronization();
+      pagePrefetcher.destroy();
+    }
+  }
+
+
+  private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 100 && !condition.getAsBoolean(); ++i)
+      Thread.sleep(20);
+  }
+
+}
@@ -0,0 +1,156 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.StatementCounter;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:querybudget;DB_CLOSE_DELAY=-1")
+@Transactional
+class QueryBudgetTest {
+
+  private static final int RUNS = 5;
+
+  @TestConfiguration
+  static class StatementCounterConfig {
+    @Bean
+    StatementCounter statementCounter() {
+      return new StatementCounter();
+    }
+  }
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private StatementCounter statementCounter;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+  @Autowired
+  private MemberJpaRepository memberJpaRepository;
+
+  @Autowired
+  private TeamRepository teamRepository;
+
+  private Properties budgets;
+
+
+  @BeforeEach
+  void before() throws IOException {
+    budgets = PropertiesLoaderUtils.loadProperties(new ClassPathResource("query-budgets.properties"));
+
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    em.persist(teamA);
+    em.persist(teamB);
+    for (int i = 0; i < 200; ++i)
+      em.persist(new Member("member" + i, i % 100, (i & 1) == 0? teamA: teamB));
+    em.flush();
+    em.clear();
+  }
+
+
+  @Test
+  void search() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamA");
+    condition.setAgeGoe(10);
+    assertWithinBudget("search", () -> memberRepository.search(condition));
+  }
+
+
+  @Test
+  void searchPageSimple() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeLoe(50);
+    assertWithinBudget("searchPageSimple", () -> memberRepository.searchPageSimple(condition, PageRequest.of(1, 10)));
+  }
+
+
+  @Test
+  void searchPageComplex() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setTeamName("teamB");
+    assertWithinBudget("searchPageComplex", () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)));
+  }
+
+
+  @Test
+  void searchPageComplexLastPage() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setUsername("member7");
+    assertWithinBudget("searchPageComplexLastPage",
+                       () -> memberRepository.searchPageComplex(condition, PageRequest.of(0, 10)));
+  }
+
+
+  @Test
+  void searchMember() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(90);
+    assertWithinBudget("searchMember", () -> memberJpaRepository.searchMember(condition));
+  }
+
+
+  @Test
+  void searchMemberWithTeam() {
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe(90);
+    assertWithinBudget("searchMemberWithTeam", () -> memberJpaRepository.searchMember(condition)
+                                                                        .forEach(m -> m.getTeam().getName()));
+  }
+
+
+  @Test
+  void findTeamsWithMembers() {
+    assertWithinBudget("findTeamsWithMembers", () -> teamRepository.findTeamsWithMembers(PageRequest.of(0, 10)));
+  }
+
+
+  // 첫 호출은 캐시/플랜 준비용으로 버린다. 매 실행 전 영속성 컨텍스트를 비워 1차 캐시 효과를 없앤다.
+  private void assertWithinBudget(String name, Runnable call) {
+    em.clear();
+    call.run();
+
+    long[] elapsed = new long[RUNS];
+    for (int i = 0; i < RUNS; ++i) {
+      em.clear();
+      statementCounter.reset();
+      long start = System.nanoTime();
+      call.run();
+      elapsed[i] = System.nanoTime() - start;
+      assertThat(statementCounter.get()).as(name + " statements").isEqualTo(budget(name, "statements"));
+    }
+
+    Arrays.sort(elapsed);
+    assertThat(elapsed[RUNS / 2] / 1_000_000).as(name + " median millis").isLessThanOrEqualTo(budget(name, "max-millis"));
+  }
+
+
+  private int budget(String name, String key) {
+    String value = budgets.getProperty(name + "." + key);
+    assertThat(value).as("missing budget " + name + "." + key).isNotNull();
+    return Integer.parseInt(value.trim());
+  }
+
+}
@@ -0,0 +1,42 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest
+@Transactional
+class TeamNameCacheTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TeamNameCache teamNameCache;
+
+
+  // team 에 쓴 트랜잭션은 자신의 변경을 보고, 그 결과는 다른 스레드가 쓰는 캐시에 남지 않는다.
+  @Test
+  void bypassCacheInWritingTransaction() throws Exception {
+    assertThat(teamNameCache.teamIds("teamCache")).isEmpty();
+
+    Team team = new Team("teamCache");
+    em.persist(team);
+    assertThat(teamNameCache.teamIds("teamCache")).containsExactly(team.getId());
+
+    List<Long> otherThread = CompletableFuture.supplyAsync(() -> teamNameCache.teamIds("teamCache"))
+                                              .get(5, TimeUnit.SECONDS);
+    assertThat(otherThread).isEmpty();
+  }
+
+}
@@ -0,0 +1,52 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TeamRepository teamRepository;
+
+
+  @Test
+  void findTeamsWithMembersTest() {
+    Team teamA = new Team("teamA");
+    Team teamB = new Team("teamB");
+    Team teamC = new Team("teamC");
+    em.persist(teamA);
+    em.persist(teamB);
+    em.persist(teamC);
+
+    em.persist(new Member("member1", 10, teamA));
+    em.persist(new Member("member2", 20, teamA));
+    em.persist(new Member("member3", 30, teamB));
+    em.flush();
+    em.clear();
+
+    List<TeamMembersDto> result = teamRepository.findTeamsWithMembers(PageRequest.of(0, 10), 2);
+
+    assertThat(result).extracting("teamName").containsExactly("teamA", "teamB", "teamC");
+    assertThat(result.get(0).getMembers()).extracting("username").containsExactly("member1", "member2");
+    assertThat(result.get(1).getMembers()).extracting("username").containsExactly("member3");
+    assertThat(result.get(2).getMembers()).isEmpty();
+  }
+
+}
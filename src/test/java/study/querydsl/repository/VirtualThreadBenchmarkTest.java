@@ -0,0 +1,135 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.support.SemaphoreDataSource;
+import study.querydsl.support.VirtualThreads;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+// ./gradlew benchmark 로만 실행한다. JDK 21+ 런타임이 아니면 컨텍스트를 띄우지 않고 건너뛴다.
+// 가상 스레드 설정을 켠 컨텍스트라 DataSource 는 SemaphoreDataSource 로 감싸져 있다.
+// 플랫폼 스레드 풀과 가상 스레드 모두 같은 permit 수로 DB 에 접근하므로 스레드 모델만 다르다.
+@Tag("benchmark")
+@EnabledIf("virtualThreadsSupported")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = {"spring.datasource.url=jdbc:h2:mem:vtbenchmark;DB_CLOSE_DELAY=-1",
+                              "querydsl.virtual-threads.enabled=true"})
+class VirtualThreadBenchmarkTest {
+
+  private static final int REQUESTS = 5000;
+  private static final int HTTP_REQUESTS = 1000;
+  private static final int PLATFORM_THREADS = 200;
+  private static final long BLOCKING_MILLIS = 5;
+
+  @Autowired
+  private EntityManager em;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private ExecutorService virtualThreadExecutor;
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+
+  static boolean virtualThreadsSupported() {
+    return VirtualThreads.isSupported();
+  }
+
+
+  @BeforeEach
+  void before() {
+    transactionTemplate.executeWithoutResult(status -> {
+      if (memberRepository.count() > 0)
+        return;
+      Team teamA = new Team("teamA");
+      Team teamB = new Team("teamB");
+      em.persist(teamA);
+      em.persist(teamB);
+      for (int i = 0; i < 1000; ++i)
+        em.persist(new Member("member" + i, i % 100, (i & 1) == 0? teamA: teamB));
+    });
+  }
+
+
+  @Test
+  void compareThroughput() throws Exception {
+    assertThat(dataSource.isWrapperFor(SemaphoreDataSource.class)).isTrue();
+
+    ExecutorService warmUp = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    ExecutorService platformThreads = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    try {
+      run(warmUp, REQUESTS, this::searchPage);
+      long platform = run(platformThreads, REQUESTS, this::searchPage);
+      long virtual = run(virtualThreadExecutor, REQUESTS, this::searchPage);
+      System.out.printf("platform(%d threads): %d ms, virtual: %d ms, %d requests%n",
+                        PLATFORM_THREADS, platform, virtual, REQUESTS);
+    } finally {
+      warmUp.shutdown();
+      platformThreads.shutdown();
+    }
+  }
+
+
+  // Tomcat 이 가상 스레드 executor 로 요청을 처리하는 전체 경로. 클라이언트 쪽 동시성도 가상 스레드로 만든다.
+  @Test
+  void httpThroughput() throws Exception {
+    long elapsed = run(virtualThreadExecutor, HTTP_REQUESTS, () -> {
+      HttpStatus status = restTemplate.getForEntity("/v2/members?ageGoe=10&size=20", String.class).getStatusCode();
+      assertThat(status).isEqualTo(HttpStatus.OK);
+      return 0;
+    });
+    System.out.printf("http via virtual-thread tomcat executor: %d ms, %d requests%n", elapsed, HTTP_REQUESTS);
+  }
+
+
+  // 요청마다 외부 호출을 흉내 낸 블로킹 대기 후 검색 한 페이지를 읽는다.
+  private int searchPage() throws InterruptedException {
+    Thread.sleep(BLOCKING_MILLIS);
+    MemberSearchCondition condition = new MemberSearchCondition();
+    condition.setAgeGoe((int) (Thread.currentThread().getId() % 100));
+    return memberRepository.searchPageSimple(condition, PageRequest.of(0, 20)).getNumberOfElements();
+  }
+
+
+  private long run(ExecutorService executor, int requests, Callable<Integer> request) throws Exception {
+    long start = System.nanoTime();
+    List<Future<Integer>> futures = new ArrayList<>(requests);
+    for (int i = 0; i < requests; ++i)
+      futures.add(executor.submit(request));
+    for (Future<Integer> future : futures)
+      assertThat(future.get()).isLessThanOrEqualTo(20);
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+}
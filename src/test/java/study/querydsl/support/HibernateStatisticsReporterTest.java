@@ -0,0 +1,55 @@
+package study.querydsl.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@SpringBootTest
+class HibernateStatisticsReporterTest {
+
+  @Autowired
+  private EntityManagerFactory emf;
+
+  @Autowired
+  private HibernateStatisticsReporter hibernateStatisticsReporter;
+
+  @Autowired
+  private MemberRepository memberRepository;
+
+
+  // 통계가 꺼져 있으면 enabled 만 돌려준다. 켜면 읽은 만큼 쌓이고 reset 으로 비워진다.
+  @Test
+  @SuppressWarnings("unchecked")
+  void snapshotAndReset() {
+    Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    boolean enabled = statistics.isStatisticsEnabled();
+    statistics.setStatisticsEnabled(false);
+    try {
+      assertThat(hibernateStatisticsReporter.snapshot()).containsOnlyKeys("enabled");
+
+      statistics.setStatisticsEnabled(true);
+      hibernateStatisticsReporter.reset();
+      memberRepository.count();
+      Map<String, Object> snapshot = hibernateStatisticsReporter.snapshot();
+      assertThat(snapshot).containsKeys("startTime", "global", "entities", "collections", "queries");
+      assertThat((Map<String, Object>) snapshot.get("entities")).containsOnlyKeys("Member", "Team");
+      assertThat((long) ((Map<String, Object>) snapshot.get("global")).get("prepareStatementCount")).isPositive();
+
+      hibernateStatisticsReporter.reset();
+      Map<String, Object> global = (Map<String, Object>) hibernateStatisticsReporter.snapshot().get("global");
+      assertThat(global.get("prepareStatementCount")).isEqualTo(0L);
+    } finally {
+      statistics.setStatisticsEnabled(enabled);
+    }
+  }
+
+}
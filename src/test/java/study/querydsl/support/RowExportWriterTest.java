@@ -0,0 +1,74 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class RowExportWriterTest {
+
+  @Test
+  void csv() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (RowExportWriter writer = new RowExportWriter(out, RowExportWriter.Format.CSV, "id", "name")) {
+      writer.write(1L, "plain");
+      writer.write(2L, "a,\"b\"");
+      writer.write(3L, null);
+      writer.finish();
+    }
+    assertThat(gunzip(out)).isEqualTo("id,name\n1,plain\n2,\"a,\"\"b\"\"\"\n3,\n");
+  }
+
+
+  @Test
+  void ndjson() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (RowExportWriter writer = new RowExportWriter(out, RowExportWriter.Format.NDJSON, "id", "name")) {
+      writer.write(1L, "멤버\"1\"\n");
+      writer.write(2L, null);
+      writer.finish();
+    }
+    assertThat(gunzip(out)).isEqualTo("{\"id\":1,\"name\":\"멤버\\\"1\\\"\\u000a\"}\n{\"id\":2,\"name\":null}\n");
+  }
+
+
+  @Test
+  void largerThanBuffer() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String name = "x".repeat(1000);
+    try (RowExportWriter writer = new RowExportWriter(out, RowExportWriter.Format.CSV, "id", "name")) {
+      for (long i = 0; i < 1000; ++i)
+        writer.write(i, name);
+      writer.finish();
+    }
+    assertThat(gunzip(out).lines()).hasSize(1001);
+  }
+
+
+  // 중간에 실패해 finish() 없이 닫히면 trailer 가 없어 받는 쪽에서 잘린 스트림으로 드러난다.
+  @Test
+  void truncatedWithoutFinish() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (RowExportWriter writer = new RowExportWriter(out, RowExportWriter.Format.CSV, "id", "name")) {
+      for (long i = 0; i < 1000; ++i)
+        writer.write(i, "x".repeat(100));
+    }
+    assertThatThrownBy(() -> gunzip(out)).isInstanceOf(EOFException.class);
+  }
+
+
+  private String gunzip(ByteArrayOutputStream out) throws IOException {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class SampledSqlLoggerTest {
+
+  @Test
+  void redactLiterals() {
+    assertThat(SampledSqlLogger.redact("update member set change_seq = 42, username = 'kim''s' where age > 1.5"))
+        .isEqualTo("update member set change_seq = ?, username = ? where age > ?");
+    assertThat(SampledSqlLogger.redact("select member0_.member_id from member member0_ where member0_.username=?"))
+        .isEqualTo("select member0_.member_id from member member0_ where member0_.username=?");
+    assertThat(SampledSqlLogger.redact("select \"t1\".\"col2\" from t1 where x = '' limit 10"))
+        .isEqualTo("select \"t1\".\"col2\" from t1 where x = ? limit ?");
+  }
+
+
+  @Test
+  void parameterCountSkipsQuotedMarks() {
+    assertThat(SampledSqlLogger.parameterCount("select * from member where username = '?' and age = ? and id in (?, ?)"))
+        .isEqualTo(3);
+  }
+
+}
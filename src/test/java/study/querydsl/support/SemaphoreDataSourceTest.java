@@ -0,0 +1,49 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class SemaphoreDataSourceTest {
+
+  @Test
+  void releasesPermitOnceOnClose() throws Exception {
+    SemaphoreDataSource dataSource = new SemaphoreDataSource(new DriverManagerDataSource("jdbc:h2:mem:semaphore"), 2, 100);
+
+    Connection connection = dataSource.getConnection();
+    assertThat(dataSource.availablePermits()).isEqualTo(1);
+    connection.close();
+    connection.close();
+    assertThat(dataSource.availablePermits()).isEqualTo(2);
+  }
+
+
+  @Test
+  void timesOutWithoutPermit() throws Exception {
+    SemaphoreDataSource dataSource = new SemaphoreDataSource(new DriverManagerDataSource("jdbc:h2:mem:semaphore"), 1, 10);
+
+    try (Connection connection = dataSource.getConnection()) {
+      assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+      assertThat(dataSource.availablePermits()).isZero();
+    }
+    assertThat(dataSource.availablePermits()).isEqualTo(1);
+  }
+
+
+  @Test
+  void releasesPermitWhenGetConnectionFails() {
+    SemaphoreDataSource dataSource = new SemaphoreDataSource(new DriverManagerDataSource("jdbc:unknown:semaphore"), 1, 10);
+
+    assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLException.class);
+    assertThatThrownBy(() -> dataSource.getConnection("sa", "")).isInstanceOf(SQLException.class);
+    assertThat(dataSource.availablePermits()).isEqualTo(1);
+  }
+
+}
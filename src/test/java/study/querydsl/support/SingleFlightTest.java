@@ -0,0 +1,78 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class SingleFlightTest {
+
+  @Test
+  void sharesInFlightCall() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>(5000, 10);
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+      started.countDown();
+      await(release);
+      return executions.incrementAndGet();
+    }));
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+    CompletableFuture<Integer> follower = CompletableFuture.supplyAsync(
+        () -> singleFlight.execute("key", executions::incrementAndGet));
+    Thread.sleep(100);
+    release.countDown();
+
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    assertThat(executions.get()).isEqualTo(1);
+    assertThat(singleFlight.stats().get("key")).containsEntry("executions", 1L)
+                                               .containsEntry("shared", 1L);
+  }
+
+
+  @Test
+  void followerRunsItselfAfterTimeout() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>(10, 10);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+      await(release);
+      return "leader";
+    }));
+    Thread.sleep(50);
+
+    assertThat(singleFlight.execute("key", () -> "follower")).isEqualTo("follower");
+    release.countDown();
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("leader");
+    assertThat(singleFlight.stats().get("key")).containsEntry("timeouts", 1L)
+                                               .containsEntry("shared", 0L)
+                                               .containsEntry("executions", 2L);
+  }
+
+
+  @Test
+  void statsUseMappedKey() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>(10, 10, key -> "k" + key.length());
+    singleFlight.execute("secret", () -> "value");
+    assertThat(singleFlight.stats()).containsOnlyKeys("k6");
+  }
+
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
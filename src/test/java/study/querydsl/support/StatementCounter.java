@@ -0,0 +1,31 @@
+package study.querydsl.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// 실행된 JDBC 문장 수를 센다. 빈으로 등록하면 p6spy 데이터소스 데코레이터가 붙여 준다.
+public class StatementCounter extends SimpleJdbcEventListener {
+
+  private final AtomicInteger count = new AtomicInteger();
+
+
+  @Override
+  public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+    count.incrementAndGet();
+  }
+
+
+  public void reset() {
+    count.set(0);
+  }
+
+
+  public int get() {
+    return count.get();
+  }
+
+}
@@ -0,0 +1,130 @@
+package study.querydsl.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+
+@SpringBootTest
+@Transactional
+class TableWriteInspectorTest {
+
+  @Autowired
+  EntityManager em;
+
+  @Autowired
+  TableVersions tableVersions;
+
+  @Autowired
+  TableWriteInspector tableWriteInspector;
+
+
+  @Test
+  void bumpOnFlush() {
+    String memberToken = tableVersions.token(TableVersions.MEMBER);
+    long teamVersion = tableVersions.version(TableVersions.TEAM);
+
+    Team teamA = new Team("teamA");
+    em.persist(teamA);
+    em.persist(new Member("member1", 10, teamA));
+    em.flush();
+
+    assertThat(tableVersions.token(TableVersions.MEMBER)).isNotEqualTo(memberToken);
+    assertThat(tableVersions.version(TableVersions.TEAM)).isGreaterThan(teamVersion);
+  }
+
+
+  @Test
+  void bumpOnBulkUpdate() {
+    long memberVersion = tableVersions.version(TableVersions.MEMBER);
+
+    new JPAQueryFactory(em).update(member)
+                           .set(member.age, member.age.add(1))
+                           .execute();
+
+    assertThat(tableVersions.version(TableVersions.MEMBER)).isGreaterThan(memberVersion);
+  }
+
+
+  // SET 목록에 change_seq 가 없으면 where 절에 나와도 순번을 붙인다.
+  @Test
+  void stampBulkUpdateBySetList() {
+    assertThat(tableWriteInspector.inspect("update member set age=age+1 where change_seq>?"))
+        .matches("update member set change_seq = \\d+, last_active_at = localtimestamp, age=age\\+1"
+                 + " where change_seq>\\?");
+    assertThat(tableWriteInspector.inspect("update member set age=(select max(change_seq) from team) where age>?"))
+        .startsWith("update member set change_seq = ");
+
+    String somewhere = "update team set name=somewhere, change_seq=? where team_id=?";
+    assertThat(tableWriteInspector.inspect(somewhere)).isEqualTo(somewhere);
+
+    String stamped = "update member set age=age+1, change_seq=?, last_active_at=? where member_id=?";
+    assertThat(tableWriteInspector.inspect(stamped)).isEqualTo(stamped);
+  }
+
+
+  @Test
+  void rejectBulkUpdateOfUsernameOnly() {
+    assertThatThrownBy(() -> tableWriteInspector.inspect("update member set username=? where age<?"))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(tableWriteInspector.inspect("update member set username=?, username_normalized=? where age<?"))
+        .contains("username=?, username_normalized=? where age<?");
+    assertThat(tableWriteInspector.inspect("update member set age=? where username=?"))
+        .endsWith("age=? where username=?");
+  }
+
+
+  @Test
+  void rejectBulkDeleteOfMember() {
+    assertThatThrownBy(() -> new JPAQueryFactory(em).delete(member)
+                                                    .where(member.age.gt(100))
+                                                    .execute())
+        .isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> tableWriteInspector.inspect("delete from member where member_id=?"))
+        .isInstanceOf(IllegalStateException.class);
+
+    Member member1 = new Member("member1", 10);
+    em.persist(member1);
+    em.flush();
+    em.remove(member1);
+    em.flush();
+    assertThat(em.find(Member.class, member1.getId())).isNull();
+
+    // 변경 피드가 삭제를 기록하지 않으면 벌크 delete 를 그대로 둔다.
+    String bulkDelete = "delete from member where age>?";
+    assertThat(new TableWriteInspector(tableVersions, null, false).inspect(bulkDelete)).isEqualTo(bulkDelete);
+  }
+
+
+  @Test
+  void noBumpOnSelect() {
+    long memberVersion = tableVersions.version(TableVersions.MEMBER);
+
+    new JPAQueryFactory(em).selectFrom(member).fetch();
+
+    assertThat(tableVersions.version(TableVersions.MEMBER)).isEqualTo(memberVersion);
+  }
+
+
+  @Test
+  void trackWritesInCurrentTransaction() {
+    assertThat(tableWriteInspector.writtenInCurrentTransaction(TableVersions.MEMBER, TableVersions.TEAM)).isFalse();
+
+    em.persist(new Team("teamA"));
+    em.flush();
+
+    assertThat(tableWriteInspector.writtenInCurrentTransaction(TableVersions.MEMBER)).isFalse();
+    assertThat(tableWriteInspector.writtenInCurrentTransaction(TableVersions.MEMBER, TableVersions.TEAM)).isTrue();
+  }
+
+}
@@ -0,0 +1,19 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class UsernamesTest {
+
+  @Test
+  void normalize() {
+    assertThat(Usernames.normalize("Member1")).isEqualTo("member1");
+    assertThat(Usernames.normalize("ＭＥＭＢＥＲ１")).isEqualTo("member1");
+    assertThat(Usernames.normalize("Straße")).isEqualTo(Usernames.normalize("STRASSE"));
+    assertThat(Usernames.normalize("ﬁle")).isEqualTo("file");
+    assertThat(Usernames.normalize(null)).isNull();
+  }
+
+}